@@ -23,10 +23,13 @@ import android.content.res.ColorStateList;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
+import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.util.AttributeSet;
 import android.view.View;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
 
 import com.less.uis.R;
 
@@ -36,6 +39,9 @@ public class Loading extends View {
 
     private LoadingDrawable mLoadingDrawable;
     private boolean mAutoRun;
+    private boolean mRenderThread;
+    private boolean mAtlasEnabled;
+    private int mStyle = STYLE_CIRCLE;
 
     public Loading(Context context) {
         super(context);
@@ -64,7 +70,7 @@ public class Loading extends View {
 
         if (attrs == null) {
             // default we init a circle style loading drawable
-            setProgressStyle();
+            edit().apply();
             return;
         }
 
@@ -89,15 +95,21 @@ public class Loading extends View {
 
         float progress = a.getFloat(R.styleable.Loading_gProgressFloat, 0);
 
+        boolean renderThread = a.getBoolean(R.styleable.Loading_gRenderThread, false);
+        int style = a.getInt(R.styleable.Loading_gStyle, STYLE_CIRCLE);
+
         a.recycle();
 
-        setProgressStyle();
         setAutoRun(autoRun);
-        setProgress(progress);
 
-        setBackgroundLineSize(bgLineSize);
-        setForegroundLineSize(fgLineSize);
-        setBackgroundColor(bgColor);
+        // all attributes are applied in one edit
+        Editor editor = edit()
+                .setProgressStyle(style)
+                .setRenderThread(renderThread)
+                .setProgress(progress)
+                .setBackgroundLineSize(bgLineSize)
+                .setForegroundLineSize(fgLineSize)
+                .setBackgroundColor(bgColor);
 
         // Check for IDE preview render
         if (!isInEditMode()) {
@@ -105,19 +117,30 @@ public class Loading extends View {
             try {
                 switch (type) {
                     case "color":
-                        setForegroundColor(resource.getColor(fgColorId));
+                        editor.setForegroundColor(resource.getColor(fgColorId));
                         break;
                     case "array":
-                        setForegroundColor(resource.getIntArray(fgColorId));
+                        editor.setForegroundColor(resource.getIntArray(fgColorId));
                         break;
                     default:
-                        setForegroundColor(resource.getIntArray(R.array.g_default_loading_fg));
+                        editor.setForegroundColor(resource.getIntArray(R.array.g_default_loading_fg));
                         break;
                 }
             } catch (Exception e) {
-                setForegroundColor(resource.getIntArray(R.array.g_default_loading_fg));
+                editor.setForegroundColor(resource.getIntArray(R.array.g_default_loading_fg));
             }
         }
+        editor.apply();
+    }
+
+    /**
+     * Start a batch of changes, the changes are applied to the loading drawable by {@link Editor#apply()}
+     * with at most one invalidate and one layout request
+     *
+     * @return Editor
+     */
+    public Editor edit() {
+        return new Editor();
     }
 
     /**
@@ -126,6 +149,7 @@ public class Loading extends View {
     public void start() {
         mLoadingDrawable.start();
         mNeedRun = false;
+        mPausedByViewport = false;
     }
 
     /**
@@ -134,6 +158,7 @@ public class Loading extends View {
     public void stop() {
         mLoadingDrawable.stop();
         mNeedRun = false;
+        mPausedByViewport = false;
     }
 
     /**
@@ -142,7 +167,7 @@ public class Loading extends View {
      * @return Loading is Running
      */
     public boolean isRunning() {
-        return mLoadingDrawable.isRunning();
+        return mLoadingDrawable.isRunning() || mPausedByViewport;
     }
 
     /**
@@ -151,9 +176,7 @@ public class Loading extends View {
      * @param size Background line size
      */
     public void setBackgroundLineSize(int size) {
-        mLoadingDrawable.setBackgroundLineSize(size);
-        invalidate();
-        requestLayout();
+        edit().setBackgroundLineSize(size).apply();
     }
 
     /**
@@ -162,9 +185,7 @@ public class Loading extends View {
      * @param size Foreground line size
      */
     public void setForegroundLineSize(int size) {
-        mLoadingDrawable.setForegroundLineSize(size);
-        invalidate();
-        requestLayout();
+        edit().setForegroundLineSize(size).apply();
     }
 
     /**
@@ -193,8 +214,7 @@ public class Loading extends View {
      */
     @Override
     public void setBackgroundColor(int color) {
-        mLoadingDrawable.setBackgroundColor(color);
-        invalidate();
+        edit().setBackgroundColor(color).apply();
     }
 
     /**
@@ -235,8 +255,7 @@ public class Loading extends View {
      * @param colors Color array
      */
     public void setForegroundColor(int[] colors) {
-        mLoadingDrawable.setForegroundColor(colors);
-        invalidate();
+        edit().setForegroundColor(colors).apply();
     }
 
     /**
@@ -265,8 +284,7 @@ public class Loading extends View {
      * @param progress Progress
      */
     public void setProgress(float progress) {
-        mLoadingDrawable.setProgress(progress);
-        invalidate();
+        edit().setProgress(progress).apply();
     }
 
     /**
@@ -291,19 +309,257 @@ public class Loading extends View {
         return mAutoRun;
     }
 
+    /**
+     * Set the spinner animate on the render thread, default is false
+     * If set "True", the spinner keeps running while the main thread is busy,
+     * it needs Android 5.0 and runs on the render thread from Android 7.1.
+     * The foreground colors are switched on the main thread once per cycle, a blocked main thread
+     * delays the next color but not the motion. The gradient can not be drawn by it,
+     * with the gradient the spinner is drawn on main thread frames as before
+     *
+     * @param renderThread Animate on render thread
+     */
+    public void setRenderThread(boolean renderThread) {
+        edit().setRenderThread(renderThread).apply();
+    }
+
+    /**
+     * Get the spinner animate on the render thread
+     *
+     * @return Bool
+     */
+    public boolean isRenderThread() {
+        return mRenderThread;
+    }
+
+    /**
+     * Set the spinner drawn from a shared pre-rendered atlas, default is false
+     * It saves drawing work on low-end devices, see {@link LoadingCircleDrawable#setAtlasEnabled(boolean)}
+     *
+     * @param atlasEnabled Draw from the atlas
+     */
+    public void setAtlasEnabled(boolean atlasEnabled) {
+        edit().setAtlasEnabled(atlasEnabled).apply();
+    }
+
+    /**
+     * Get the spinner drawn from a pre-rendered atlas
+     *
+     * @return Bool
+     */
+    public boolean isAtlasEnabled() {
+        return mAtlasEnabled;
+    }
+
+    /**
+     * Set the foreground drawn with a gradient of all foreground colors, default is false,
+     * the line style ignores it, see {@link LoadingDrawable#setGradientEnabled(boolean)}
+     *
+     * @param gradientEnabled Use the gradient
+     */
+    public void setGradientEnabled(boolean gradientEnabled) {
+        edit().setGradientEnabled(gradientEnabled).apply();
+    }
+
+    /**
+     * Get the foreground drawn with a gradient
+     *
+     * @return Bool
+     */
+    public boolean isGradientEnabled() {
+        return mLoadingDrawable.isGradientEnabled();
+    }
+
+    /**
+     * Set the loading style, {@link #STYLE_CIRCLE} or {@link #STYLE_LINE}
+     *
+     * @param style Loading style
+     */
+    public void setProgressStyle(int style) {
+        edit().setProgressStyle(style).apply();
+    }
+
+    /**
+     * Get the loading style
+     *
+     * @return {@link #STYLE_CIRCLE} or {@link #STYLE_LINE}
+     */
+    public int getProgressStyle() {
+        return mStyle;
+    }
+
     /**
      * Change the loading style
+     * The line size, colors, progress and running state are kept
      */
     public void setProgressStyle() {
-        LoadingDrawable drawable = null;
+        replaceLoadingDrawable();
+        invalidate();
+        requestLayout();
+    }
+
+    /**
+     * Build the loading drawable of the current style and options,
+     * the state of the old drawable is kept
+     */
+    private void replaceLoadingDrawable() {
+        LoadingDrawable drawable;
         Resources resources = getResources();
-        drawable = new LoadingCircleDrawable(resources.getDimensionPixelOffset(R.dimen.g_loading_minSize),
-                resources.getDimensionPixelOffset(R.dimen.g_loading_maxSize));
+        int minSize = resources.getDimensionPixelOffset(R.dimen.g_loading_minSize);
+        int maxSize = resources.getDimensionPixelOffset(R.dimen.g_loading_maxSize);
+        if (mStyle == STYLE_LINE) {
+            drawable = new LoadingLineDrawable(maxSize);
+        } else {
+            LoadingCircleDrawable circle;
+            if (mRenderThread && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                circle = new LoadingAnimatedCircleDrawable(getContext(), minSize, maxSize);
+            } else {
+                circle = new LoadingCircleDrawable(minSize, maxSize);
+            }
+            circle.setAtlasEnabled(mAtlasEnabled);
+            drawable = circle;
+        }
+
+        final LoadingDrawable old = mLoadingDrawable;
+        if (old != null) {
+            boolean running = old.isRunning();
+            // detach first, stopping the old drawable must not invalidate
+            old.setCallback(null);
+            old.stop();
+
+            drawable.setBackgroundLineSize(old.getBackgroundLineSize());
+            drawable.setForegroundLineSize(old.getForegroundLineSize());
+            drawable.setBackgroundColor(old.getBackgroundColor());
+            drawable.setForegroundColor(old.getForegroundColor());
+            drawable.setFrameRate(old.getFrameRate());
+            drawable.setGradientEnabled(old.isGradientEnabled());
+            drawable.setBounds(old.getBounds());
+            if (old.getProgress() > 0)
+                drawable.setProgress(old.getProgress());
+            if (running)
+                drawable.start();
+        }
         drawable.setCallback(this);
         mLoadingDrawable = drawable;
+    }
 
-        invalidate();
-        requestLayout();
+    /**
+     * Batched changes of a {@link Loading}, from {@link Loading#edit()}
+     * <p>
+     * The setters only record the values, {@link #apply()} updates the loading drawable once,
+     * then calls invalidate once and requestLayout only if the drawable's size changed.
+     */
+    public final class Editor {
+        private Integer mEditStyle;
+        private Boolean mEditRenderThread;
+        private Boolean mEditAtlasEnabled;
+        private Boolean mEditGradientEnabled;
+        private Integer mEditBackgroundLineSize;
+        private Integer mEditForegroundLineSize;
+        private Integer mEditBackgroundColor;
+        private int[] mEditForegroundColor;
+        private Float mEditProgress;
+
+        private Editor() {
+        }
+
+        public Editor setProgressStyle(int style) {
+            mEditStyle = style;
+            return this;
+        }
+
+        public Editor setRenderThread(boolean renderThread) {
+            mEditRenderThread = renderThread;
+            return this;
+        }
+
+        public Editor setAtlasEnabled(boolean atlasEnabled) {
+            mEditAtlasEnabled = atlasEnabled;
+            return this;
+        }
+
+        public Editor setGradientEnabled(boolean gradientEnabled) {
+            mEditGradientEnabled = gradientEnabled;
+            return this;
+        }
+
+        public Editor setBackgroundLineSize(int size) {
+            mEditBackgroundLineSize = size;
+            return this;
+        }
+
+        public Editor setForegroundLineSize(int size) {
+            mEditForegroundLineSize = size;
+            return this;
+        }
+
+        public Editor setBackgroundColor(int color) {
+            mEditBackgroundColor = color;
+            return this;
+        }
+
+        public Editor setForegroundColor(int color) {
+            return setForegroundColor(new int[]{color});
+        }
+
+        public Editor setForegroundColor(int[] colors) {
+            mEditForegroundColor = colors;
+            return this;
+        }
+
+        public Editor setProgress(float progress) {
+            mEditProgress = progress;
+            return this;
+        }
+
+        /**
+         * Apply all changes
+         */
+        public void apply() {
+            boolean rebuild = mLoadingDrawable == null;
+            if (mEditStyle != null && mEditStyle != mStyle) {
+                mStyle = mEditStyle;
+                rebuild = true;
+            }
+            if (mEditRenderThread != null && mEditRenderThread != mRenderThread) {
+                mRenderThread = mEditRenderThread;
+                rebuild = true;
+            }
+            if (mEditAtlasEnabled != null)
+                mAtlasEnabled = mEditAtlasEnabled;
+
+            final int oldWidth = rebuild ? -1 : mLoadingDrawable.getIntrinsicWidth();
+            final int oldHeight = rebuild ? -1 : mLoadingDrawable.getIntrinsicHeight();
+            if (rebuild)
+                replaceLoadingDrawable();
+
+            final LoadingDrawable drawable = mLoadingDrawable;
+            // every drawable setter invalidates by itself, detach it so the edit invalidates once
+            drawable.setCallback(null);
+            if (mEditAtlasEnabled != null && drawable instanceof LoadingCircleDrawable)
+                ((LoadingCircleDrawable) drawable).setAtlasEnabled(mAtlasEnabled);
+            if (mEditGradientEnabled != null)
+                drawable.setGradientEnabled(mEditGradientEnabled);
+            if (mEditBackgroundLineSize != null)
+                drawable.setBackgroundLineSize(mEditBackgroundLineSize);
+            if (mEditForegroundLineSize != null)
+                drawable.setForegroundLineSize(mEditForegroundLineSize);
+            if (mEditBackgroundColor != null)
+                drawable.setBackgroundColor(mEditBackgroundColor);
+            if (mEditForegroundColor != null)
+                drawable.setForegroundColor(mEditForegroundColor);
+            if (mEditProgress != null) {
+                drawable.setProgress(mEditProgress);
+                // a progress stops the animation, a paused one must not come back either
+                mNeedRun = false;
+                mPausedByViewport = false;
+            }
+            drawable.setCallback(Loading.this);
+
+            invalidate();
+            if (drawable.getIntrinsicWidth() != oldWidth || drawable.getIntrinsicHeight() != oldHeight)
+                requestLayout();
+        }
     }
 
     @Override
@@ -404,9 +660,62 @@ public class Loading extends View {
         }
     }
 
+    private final Rect mVisibleRect = new Rect();
+    private boolean mPausedByViewport;
+
+    /**
+     * Scrolling, layout and alpha changes all end in a draw of the window,
+     * so the on screen state is checked before each draw while the loading is running or paused by it.
+     * The check walks the parents once, it is skipped while the loading is stopped
+     */
+    private final ViewTreeObserver.OnPreDrawListener mViewportPreDrawListener = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            if (mPausedByViewport || mLoadingDrawable.isRunning())
+                changeRunStateByViewport();
+            return true;
+        }
+    };
+
+    private void changeRunStateByViewport() {
+        if (isOnScreen()) {
+            if (mPausedByViewport) {
+                mPausedByViewport = false;
+                mLoadingDrawable.start();
+            }
+        } else if (mLoadingDrawable.isRunning()) {
+            mPausedByViewport = true;
+            mLoadingDrawable.stop();
+        }
+    }
+
+    /**
+     * Check the loading can be seen: shown, not clipped out of the window
+     * (eg: scrolled off screen) and neither it nor any parent has an alpha of 0,
+     * including one animated to 0.
+     * A loading covered by a sibling view is not detected, that needs the drawing
+     * order and opacity of every view above it
+     *
+     * @return Loading is on screen
+     */
+    private boolean isOnScreen() {
+        if (!isShown() || !getGlobalVisibleRect(mVisibleRect))
+            return false;
+        View view = this;
+        while (true) {
+            if (view.getAlpha() == 0)
+                return false;
+            ViewParent parent = view.getParent();
+            if (!(parent instanceof View))
+                return true;
+            view = (View) parent;
+        }
+    }
+
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
+        getViewTreeObserver().addOnPreDrawListener(mViewportPreDrawListener);
         if (mAutoRun && mLoadingDrawable.getProgress() == 0) {
             if (getVisibility() == VISIBLE)
                 mLoadingDrawable.start();
@@ -418,6 +727,8 @@ public class Loading extends View {
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
+        getViewTreeObserver().removeOnPreDrawListener(mViewportPreDrawListener);
+        mPausedByViewport = false;
         mLoadingDrawable.stop();
     }
 }
\ No newline at end of file
@@ -0,0 +1,238 @@
+package com.less.uis.emptylayout;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.AnimatedVectorDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.SystemClock;
+
+import com.less.uis.R;
+
+/**
+ * A circle loading drawable whose spinner is an {@link AnimatedVectorDrawable}
+ * <p>
+ * The rotation and sweep are property animations of the vector, from Android 7.1
+ * they run on the render thread, so the spinner keeps moving while the main thread is blocked.
+ * Their durations and curves follow {@link LoadingCircleModel}, so switching backends keeps the motion.
+ * The drawable is not driven by {@link LoadingTicker} while the spinner is used.
+ * <p>
+ * The background ring and the progress arc are drawn like {@link LoadingCircleDrawable}.
+ * The spinner is sized so its arc lies on the same circle, its stroke width follows the
+ * foreground line size through the {@code gSpinnerStrokeWidth} theme attribute, rounded
+ * to the nearest of the GLoadingSpinnerStroke styles.
+ * The foreground colors are switched by tinting the spinner once per cycle from the main thread,
+ * while the main thread is blocked the spinner keeps moving in its current color.
+ * A vector cannot draw the sweep gradient, with the gradient the drawable falls back to
+ * the frame driven {@link LoadingCircleDrawable}.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class LoadingAnimatedCircleDrawable extends LoadingCircleDrawable implements Drawable.Callback {
+    // the arc of g_loading_spinner_vector, in its 48 units viewport
+    private static final float SPINNER_VIEWPORT = 48;
+    private static final float SPINNER_RADIUS = 19;
+    // GLoadingSpinnerStroke1..10, private styles of the library, a wider stroke would leave the viewport
+    private static final int[] SPINNER_STROKE_STYLES = {
+            R.style.GLoadingSpinnerStroke1, R.style.GLoadingSpinnerStroke2,
+            R.style.GLoadingSpinnerStroke3, R.style.GLoadingSpinnerStroke4,
+            R.style.GLoadingSpinnerStroke5, R.style.GLoadingSpinnerStroke6,
+            R.style.GLoadingSpinnerStroke7, R.style.GLoadingSpinnerStroke8,
+            R.style.GLoadingSpinnerStroke9, R.style.GLoadingSpinnerStroke10
+    };
+
+    private final Context mContext;
+    private AnimatedVectorDrawable mSpinner;
+    // stroke width of the inflated spinner, in viewport units
+    private int mSpinnerStroke;
+    // false when the colors can not be drawn by the spinner, the arc is drawn on frame ticks instead
+    private boolean mSpinnerUsable;
+    private final Rect mSpinnerBounds = new Rect();
+    private int mAlpha = 255;
+    private ColorFilter mColorFilter;
+
+    // uptime the spinner was started at, the colors are switched at the end of its cycles
+    private long mSpinnerStartTime;
+    private long mNextColorTime;
+    private final Runnable mColorCycle = new Runnable() {
+        @Override
+        public void run() {
+            if (!isRunning() || !mSpinnerUsable)
+                return;
+            mSpinner.setTint(getNextForegroundColor());
+            mNextColorTime += LoadingCircleModel.CYCLE_DURATION;
+            scheduleSelf(this, mNextColorTime);
+        }
+    };
+
+    public LoadingAnimatedCircleDrawable(Context context, int minSize, int maxSize) {
+        super(minSize, maxSize);
+        mContext = context;
+    }
+
+    @Override
+    protected boolean isFrameDriven() {
+        return !mSpinnerUsable;
+    }
+
+    @Override
+    public void start() {
+        if (!isRunning()) {
+            super.start();
+            if (mSpinnerUsable)
+                startSpinner();
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (isRunning()) {
+            unscheduleSelf(mColorCycle);
+            if (mSpinner != null)
+                mSpinner.stop();
+            super.stop();
+        }
+    }
+
+    private void startSpinner() {
+        mSpinner.start();
+        mSpinnerStartTime = SystemClock.uptimeMillis();
+        scheduleColorCycle();
+    }
+
+    /**
+     * Schedule the next color switch at the end of the current cycle of the spinner
+     */
+    private void scheduleColorCycle() {
+        unscheduleSelf(mColorCycle);
+        if (getForegroundColor().length > 1) {
+            final long cycle = LoadingCircleModel.CYCLE_DURATION;
+            final long now = SystemClock.uptimeMillis();
+            mNextColorTime = now + cycle - (now - mSpinnerStartTime) % cycle;
+            scheduleSelf(mColorCycle, mNextColorTime);
+        }
+    }
+
+    @Override
+    public void setForegroundColor(int[] colors) {
+        super.setForegroundColor(colors);
+        updateSpinner();
+        if (isRunning() && mSpinnerUsable)
+            scheduleColorCycle();
+    }
+
+    @Override
+    public void setGradientEnabled(boolean gradientEnabled) {
+        super.setGradientEnabled(gradientEnabled);
+        updateSpinner();
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        super.onBoundsChange(bounds);
+        updateSpinner();
+    }
+
+    /**
+     * Inflate the spinner for the current bounds and line size,
+     * or switch to the frame driven arc when the spinner can not draw the gradient
+     */
+    private void updateSpinner() {
+        final Rect bounds = getBounds();
+        final int radius = Math.min(bounds.width(), bounds.height()) >> 1;
+        final int maxStrokeRadius = ((int) Math.max(getForegroundLineSize(), getBackgroundLineSize()) >> 1) + 1;
+        final int arcRadius = radius - maxStrokeRadius;
+        final boolean usable = arcRadius > 0 && !hasGradient();
+
+        boolean running = isRunning();
+        boolean replaced = false;
+        if (running && usable != mSpinnerUsable)
+            stop();
+
+        if (usable) {
+            // the vector is scaled so its arc radius is the arc radius of the circle drawable
+            final int size = Math.round(arcRadius * SPINNER_VIEWPORT / SPINNER_RADIUS);
+            final int stroke = Math.max(1, Math.min(SPINNER_STROKE_STYLES.length,
+                    Math.round(getForegroundLineSize() * SPINNER_RADIUS / arcRadius)));
+            if (mSpinner == null || stroke != mSpinnerStroke) {
+                replaced = true;
+                if (mSpinner != null) {
+                    mSpinner.stop();
+                    mSpinner.setCallback(null);
+                }
+                mSpinner = inflateSpinner(stroke);
+                mSpinnerStroke = stroke;
+            }
+            final int left = bounds.centerX() - (size >> 1);
+            final int top = bounds.centerY() - (size >> 1);
+            mSpinnerBounds.set(left, top, left + size, top + size);
+            mSpinner.setBounds(mSpinnerBounds);
+            mSpinner.setTint(mForegroundPaint.getColor());
+        }
+
+        if (usable != mSpinnerUsable) {
+            mSpinnerUsable = usable;
+            if (running)
+                start();
+        } else if (running && usable && replaced) {
+            // a new spinner replaced the running one
+            startSpinner();
+        }
+    }
+
+    private AnimatedVectorDrawable inflateSpinner(int stroke) {
+        final Resources resources = mContext.getResources();
+        final Resources.Theme theme = resources.newTheme();
+        theme.setTo(mContext.getTheme());
+        theme.applyStyle(SPINNER_STROKE_STYLES[stroke - 1], true);
+        AnimatedVectorDrawable spinner = (AnimatedVectorDrawable) resources.getDrawable(R.drawable.g_loading_spinner, theme).mutate();
+        spinner.setCallback(this);
+        spinner.setAlpha(mAlpha);
+        spinner.setColorFilter(mColorFilter);
+        return spinner;
+    }
+
+    @Override
+    protected void drawForeground(Canvas canvas, Paint foregroundPaint) {
+        if (isRunning() && mSpinnerUsable) {
+            mSpinner.draw(canvas);
+        } else {
+            super.drawForeground(canvas, foregroundPaint);
+        }
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        super.setAlpha(alpha);
+        mAlpha = alpha;
+        if (mSpinner != null)
+            mSpinner.setAlpha(alpha);
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter cf) {
+        super.setColorFilter(cf);
+        mColorFilter = cf;
+        if (mSpinner != null)
+            mSpinner.setColorFilter(cf);
+    }
+
+    @Override
+    public void invalidateDrawable(Drawable who) {
+        invalidateSelf();
+    }
+
+    @Override
+    public void scheduleDrawable(Drawable who, Runnable what, long when) {
+        scheduleSelf(what, when);
+    }
+
+    @Override
+    public void unscheduleDrawable(Drawable who, Runnable what) {
+        unscheduleSelf(what);
+    }
+}
@@ -0,0 +1,111 @@
+package com.less.uis.emptylayout;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Pre-rendered foreground arcs of the circle loading for every sweep of one cycle
+ * <p>
+ * Each cell holds the arc at start angle 0, the drawable rotates the canvas to the
+ * start angle and blits the cell with its foreground paint. The atlas is an alpha mask,
+ * so the paint color tints it and one atlas serves every palette.
+ * Atlases are shared by size, radius and stroke, and released with the last drawable using them.
+ */
+final class LoadingAtlas {
+    private static final int CELL_COUNT = 48;
+    private static final int COLUMNS = 7;
+    // keep the atlas inside the texture size every GPU supports
+    private static final int MAX_ATLAS_SIZE = 2048;
+
+    private static final HashMap<String, WeakReference<LoadingAtlas>> sAtlases = new HashMap<>();
+
+    private final Bitmap mBitmap;
+    private final int mCellSize;
+
+    /**
+     * Get a shared atlas
+     *
+     * @param radius      Arc radius
+     * @param strokeWidth Foreground line size
+     * @param cap         Foreground line cap
+     * @return The atlas, null if it would be too large
+     */
+    static LoadingAtlas obtain(int radius, float strokeWidth, Paint.Cap cap) {
+        final int cellSize = (int) Math.ceil(radius * 2 + strokeWidth) + 2;
+        final int rows = (CELL_COUNT + COLUMNS - 1) / COLUMNS;
+        if (radius <= 0 || cellSize * Math.max(COLUMNS, rows) > MAX_ATLAS_SIZE)
+            return null;
+
+        final String key = radius + ":" + strokeWidth + ":" + cap;
+        WeakReference<LoadingAtlas> reference = sAtlases.get(key);
+        LoadingAtlas atlas = reference == null ? null : reference.get();
+        if (atlas == null) {
+            // drop the atlases no drawable uses any more
+            Iterator<Map.Entry<String, WeakReference<LoadingAtlas>>> iterator = sAtlases.entrySet().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().getValue().get() == null)
+                    iterator.remove();
+            }
+            atlas = new LoadingAtlas(cellSize, rows, radius, strokeWidth, cap);
+            sAtlases.put(key, new WeakReference<>(atlas));
+        }
+        return atlas;
+    }
+
+    private LoadingAtlas(int cellSize, int rows, int radius, float strokeWidth, Paint.Cap cap) {
+        mCellSize = cellSize;
+        mBitmap = Bitmap.createBitmap(cellSize * COLUMNS, cellSize * rows, Bitmap.Config.ALPHA_8);
+
+        final Canvas canvas = new Canvas(mBitmap);
+        final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeWidth(strokeWidth);
+        paint.setStrokeCap(cap);
+        paint.setColor(0xff000000);
+
+        final RectF oval = new RectF();
+        final float center = cellSize / 2f;
+        for (int i = 0; i < CELL_COUNT; i++) {
+            final float left = (i % COLUMNS) * cellSize;
+            final float top = (i / COLUMNS) * cellSize;
+            oval.set(left + center - radius, top + center - radius, left + center + radius, top + center + radius);
+            canvas.drawArc(oval, 0, -getCellSweep(i), false, paint);
+        }
+    }
+
+    private static float getCellSweep(int index) {
+        return LoadingCircleModel.MIN_SWEEP
+                + (LoadingCircleModel.MAX_SWEEP - LoadingCircleModel.MIN_SWEEP) * index / (CELL_COUNT - 1);
+    }
+
+    Bitmap getBitmap() {
+        return mBitmap;
+    }
+
+    int getCellSize() {
+        return mCellSize;
+    }
+
+    /**
+     * Get the cell with the nearest sweep
+     *
+     * @param sweep Sweep angle
+     * @param out   The cell bounds in the atlas
+     */
+    void getCell(float sweep, Rect out) {
+        final float fraction = (sweep - LoadingCircleModel.MIN_SWEEP)
+                / (LoadingCircleModel.MAX_SWEEP - LoadingCircleModel.MIN_SWEEP);
+        final int index = Math.max(0, Math.min(CELL_COUNT - 1, Math.round(fraction * (CELL_COUNT - 1))));
+        final int left = (index % COLUMNS) * mCellSize;
+        final int top = (index / COLUMNS) * mCellSize;
+        out.set(left, top, left + mCellSize, top + mCellSize);
+    }
+}
@@ -31,9 +31,6 @@ import android.graphics.RectF;
  * @version 1.0.0
  */
 public class LoadingCircleDrawable extends LoadingDrawable {
-    private static final int ANGLE_ADD = 5;
-    private static final int MIN_ANGLE_SWEEP = 3;
-    private static final int MAX_ANGLE_SWEEP = 255;
     private static int DEFAULT_SIZE = 56;
 
     private int mMinSize = DEFAULT_SIZE;
@@ -42,7 +39,12 @@ public class LoadingCircleDrawable extends LoadingDrawable {
 
     private float mStartAngle = 0;
     private float mSweepAngle = 0;
-    private int mAngleIncrement = -3;
+    private long mAnimationTime = 0;
+
+    private boolean mAtlasEnabled;
+    private LoadingAtlas mAtlas;
+    private final Rect mAtlasCell = new Rect();
+    private final RectF mAtlasBounds = new RectF();
 
     public LoadingCircleDrawable() {
         super();
@@ -84,6 +86,36 @@ public class LoadingCircleDrawable extends LoadingDrawable {
         final int areRadius = radius - maxStrokeRadius;
 
         mOval.set(centerX - areRadius, centerY - areRadius, centerX + areRadius, centerY + areRadius);
+        updateAtlas();
+    }
+
+    /**
+     * Set the running spinner drawn from a pre-rendered atlas instead of stroking the arc every frame,
+     * it trades some memory for less drawing work on low-end devices.
+     * The atlas is shared by all drawables with the same size and line size
+     *
+     * @param atlasEnabled Draw from the atlas
+     */
+    public void setAtlasEnabled(boolean atlasEnabled) {
+        if (mAtlasEnabled != atlasEnabled) {
+            mAtlasEnabled = atlasEnabled;
+            mForegroundPaint.setFilterBitmap(atlasEnabled);
+            updateAtlas();
+            invalidateSelf();
+        }
+    }
+
+    public boolean isAtlasEnabled() {
+        return mAtlasEnabled;
+    }
+
+    private void updateAtlas() {
+        final int radius = (int) (mOval.width() / 2);
+        mAtlas = mAtlasEnabled ? LoadingAtlas.obtain(radius, getForegroundLineSize(), mForegroundPaint.getStrokeCap()) : null;
+        if (mAtlas != null) {
+            final float half = mAtlas.getCellSize() / 2f;
+            mAtlasBounds.set(mOval.centerX() - half, mOval.centerY() - half, mOval.centerX() + half, mOval.centerY() + half);
+        }
     }
 
     @Override
@@ -93,24 +125,29 @@ public class LoadingCircleDrawable extends LoadingDrawable {
     }
 
     @Override
-    protected void onRefresh() {
-        final float angle = ANGLE_ADD;
-        mStartAngle += angle;
+    protected void onRefresh(long elapsed) {
+        applyAnimationTime(mAnimationTime + elapsed);
+    }
 
-        if (mStartAngle > 360) {
-            mStartAngle -= 360;
-        }
+    /**
+     * Jump the spinner to the animation time, see {@link LoadingCircleModel}
+     *
+     * @param time Animation time in milliseconds
+     */
+    public void setAnimationTime(long time) {
+        applyAnimationTime(time);
+        invalidateSelf();
+    }
 
-        if (mSweepAngle > MAX_ANGLE_SWEEP) {
-            mAngleIncrement = -mAngleIncrement;
-        } else if (mSweepAngle < MIN_ANGLE_SWEEP) {
-            mSweepAngle = MIN_ANGLE_SWEEP;
-            return;
-        } else if (mSweepAngle == MIN_ANGLE_SWEEP) {
-            mAngleIncrement = -mAngleIncrement;
-            getNextForegroundColor();
-        }
-        mSweepAngle += mAngleIncrement;
+    public long getAnimationTime() {
+        return mAnimationTime;
+    }
+
+    private void applyAnimationTime(long time) {
+        mAnimationTime = Math.max(0, time);
+        mStartAngle = LoadingCircleModel.getStartAngle(mAnimationTime);
+        mSweepAngle = LoadingCircleModel.getSweepAngle(mAnimationTime);
+        setForegroundColorIndex(LoadingCircleModel.getColorIndex(mAnimationTime, getForegroundColor().length));
     }
 
     @Override
@@ -120,6 +157,21 @@ public class LoadingCircleDrawable extends LoadingDrawable {
 
     @Override
     protected void drawForeground(Canvas canvas, Paint foregroundPaint) {
+        // the canvas is restored by draw()
+        if (hasGradient()) {
+            // the gradient is fixed at 0 degrees, turn the canvas so it starts at the tail of the arc,
+            // the atlas cells can not be turned apart from the gradient so they are not used here
+            canvas.rotate(mStartAngle - mSweepAngle, mOval.centerX(), mOval.centerY());
+            canvas.drawArc(mOval, mSweepAngle, -mSweepAngle, false, foregroundPaint);
+            return;
+        }
+        if (mAtlas != null && isRunning()) {
+            // the cells are drawn at start angle 0
+            mAtlas.getCell(mSweepAngle, mAtlasCell);
+            canvas.rotate(mStartAngle, mOval.centerX(), mOval.centerY());
+            canvas.drawBitmap(mAtlas.getBitmap(), mAtlasCell, mAtlasBounds, foregroundPaint);
+            return;
+        }
         canvas.drawArc(mOval, mStartAngle, -mSweepAngle, false, foregroundPaint);
     }
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+package com.less.uis.emptylayout;
+
+/**
+ * The geometry of the circle loading as a pure function of the animation time
+ * <p>
+ * The start angle turns at a constant speed, the sweep grows from {@link #MIN_SWEEP}
+ * to {@link #MAX_SWEEP} and shrinks back once every {@link #CYCLE_DURATION},
+ * after each cycle the next foreground color is used.
+ * The sweep curve is sampled into a keyframe table once, so every lookup is O(1)
+ * and any time can be sampled directly, without running the frames before it.
+ * No Android dependency, it can be tested off device.
+ * The render thread spinner of {@link LoadingAnimatedCircleDrawable} repeats the same motion in
+ * g_loading_spinner_rotation and g_loading_spinner_trim, keep their durations in sync with these constants.
+ */
+public final class LoadingCircleModel {
+    /**
+     * The start angle turns 5 degrees per 16ms frame
+     */
+    public static final float START_ANGLE_SPEED = 5f / 16;
+    /**
+     * One full turn of the start angle, in milliseconds
+     */
+    public static final long TURN_DURATION = 1152;
+
+    public static final float MIN_SWEEP = 3;
+    public static final float MAX_SWEEP = 255;
+    /**
+     * One grow and shrink of the sweep, in milliseconds
+     */
+    public static final long CYCLE_DURATION = 2688;
+
+    private static final int KEYFRAME_COUNT = 64;
+    private static final float[] SWEEP_KEYFRAMES = new float[KEYFRAME_COUNT + 1];
+
+    static {
+        for (int i = 0; i <= KEYFRAME_COUNT; i++) {
+            float fraction = (float) i / KEYFRAME_COUNT;
+            // grow in the first half and shrink in the second half, eased at both ends
+            float x = fraction < 0.5f ? fraction * 2 : (1 - fraction) * 2;
+            float eased = x * x * (3 - 2 * x);
+            SWEEP_KEYFRAMES[i] = MIN_SWEEP + (MAX_SWEEP - MIN_SWEEP) * eased;
+        }
+    }
+
+    private LoadingCircleModel() {
+    }
+
+    /**
+     * Get the start angle at the time
+     *
+     * @param time Animation time in milliseconds, not negative
+     * @return Start angle 0~360
+     */
+    public static float getStartAngle(long time) {
+        return (time % TURN_DURATION) * START_ANGLE_SPEED;
+    }
+
+    /**
+     * Get the sweep angle at the time, interpolated between the keyframes
+     *
+     * @param time Animation time in milliseconds, not negative
+     * @return Sweep angle between {@link #MIN_SWEEP} and {@link #MAX_SWEEP}
+     */
+    public static float getSweepAngle(long time) {
+        float position = (float) (time % CYCLE_DURATION) * KEYFRAME_COUNT / CYCLE_DURATION;
+        int index = Math.min((int) position, KEYFRAME_COUNT - 1);
+        float fraction = position - index;
+        return SWEEP_KEYFRAMES[index] + (SWEEP_KEYFRAMES[index + 1] - SWEEP_KEYFRAMES[index]) * fraction;
+    }
+
+    /**
+     * Get the foreground color index at the time
+     *
+     * @param time       Animation time in milliseconds, not negative
+     * @param colorCount Count of the foreground colors
+     * @return Color index
+     */
+    public static int getColorIndex(long time, int colorCount) {
+        if (colorCount <= 1)
+            return 0;
+        return (int) ((time / CYCLE_DURATION) % colorCount);
+    }
+}
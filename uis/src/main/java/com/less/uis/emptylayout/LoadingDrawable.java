@@ -17,13 +17,18 @@
  */
 package com.less.uis.emptylayout;
 
+import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.ColorFilter;
 import android.graphics.Paint;
 import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.SweepGradient;
 import android.graphics.drawable.Drawable;
-import android.os.SystemClock;
+
+import java.util.Arrays;
 
 /**
  * A drawable to draw loading
@@ -37,11 +42,32 @@ import android.os.SystemClock;
 @SuppressWarnings("WeakerAccess")
 public abstract class LoadingDrawable extends Drawable implements android.graphics.drawable.Animatable, Animatable {
     private static final int LINE_SIZE = 4;
+    /**
+     * Vsync timestamps jitter a little, a frame this early still counts
+     */
+    private static final int FRAME_RATE_SLACK = 4;
 
     protected Paint mForegroundPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
     protected Paint mBackgroundPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
 
     private boolean mRun;
+    // running but taken off the ticker, see park()
+    private boolean mParked;
+    private long mLastFrameTime = -1;
+    private int mFrameRate;
+
+    // the background ring never moves, draw it once and blit it on every frame,
+    // allocated with the bounds so draw() never allocates
+    private Bitmap mBackgroundCache;
+    private Canvas mBackgroundCacheCanvas;
+    private boolean mBackgroundCacheDirty = true;
+
+    // gradient foreground, built once per bounds and colors, never changed per frame:
+    // SweepGradient.setLocalMatrix rebuilds the native shader from Android 8.0
+    private boolean mGradientEnabled;
+    private SweepGradient mGradient;
+
+    private int mAlpha = 255;
 
     private int[] mForegroundColor = new int[]{0xcc000000, 0xfffe7865, 0xff842398};
     private int mForegroundColorIndex = 0;
@@ -96,6 +122,7 @@ public abstract class LoadingDrawable extends Drawable implements android.graphi
 
     public void setBackgroundColor(int color) {
         mBackgroundPaint.setColor(color);
+        invalidateBackgroundCache();
     }
 
     public int getBackgroundColor() {
@@ -108,6 +135,7 @@ public abstract class LoadingDrawable extends Drawable implements android.graphi
         this.mForegroundColor = colors;
         this.mForegroundColorIndex = -1;
         getNextForegroundColor();
+        updateGradient();
     }
 
     public int[] getForegroundColor() {
@@ -122,14 +150,87 @@ public abstract class LoadingDrawable extends Drawable implements android.graphi
             if (index >= colors.length)
                 index = 0;
 
-            fPaint.setColor(colors[index]);
             mForegroundColorIndex = index;
-        } else {
+            if (mGradient == null)
+                fPaint.setColor(colors[index]);
+        } else if (mGradient == null) {
             fPaint.setColor(colors[0]);
         }
         return fPaint.getColor();
     }
 
+    /**
+     * Set the foreground drawn with a sweep gradient of all foreground colors
+     * instead of switching between them, it needs at least two colors.
+     * A drawable whose {@link #supportsGradient()} is false keeps the setting but ignores it
+     *
+     * @param gradientEnabled Use the gradient
+     */
+    public void setGradientEnabled(boolean gradientEnabled) {
+        if (mGradientEnabled != gradientEnabled) {
+            mGradientEnabled = gradientEnabled;
+            updateGradient();
+            invalidateSelf();
+        }
+    }
+
+    public boolean isGradientEnabled() {
+        return mGradientEnabled;
+    }
+
+    /**
+     * Whether a sweep gradient around the center fits the shape of this drawable
+     *
+     * @return The gradient can be used
+     */
+    protected boolean supportsGradient() {
+        return true;
+    }
+
+    /**
+     * Whether the foreground is drawn with the gradient,
+     * the gradient starts at 0 degrees, rotate the canvas to turn it
+     *
+     * @return Gradient is used
+     */
+    protected boolean hasGradient() {
+        return mGradient != null;
+    }
+
+    private void updateGradient() {
+        final Rect bounds = getBounds();
+        final int[] colors = mForegroundColor;
+        if (!mGradientEnabled || !supportsGradient() || colors.length < 2 || bounds.isEmpty()) {
+            if (mGradient != null) {
+                mGradient = null;
+                mForegroundPaint.setShader(null);
+                mForegroundPaint.setColor(colors[Math.max(0, Math.min(mForegroundColorIndex, colors.length - 1))]);
+            }
+            return;
+        }
+        // close the loop so the gradient has no seam
+        final int[] loop = Arrays.copyOf(colors, colors.length + 1);
+        loop[colors.length] = colors[0];
+        mGradient = new SweepGradient(bounds.exactCenterX(), bounds.exactCenterY(), loop, null);
+        mForegroundPaint.setShader(mGradient);
+        // the paint alpha modulates the shader, a cycling color would make it flicker,
+        // keep only the alpha set by setAlpha
+        mForegroundPaint.setColor(Color.argb(mAlpha, 0, 0, 0));
+    }
+
+    /**
+     * Use the foreground color at the index directly
+     *
+     * @param index Color index
+     */
+    void setForegroundColorIndex(int index) {
+        if (index != mForegroundColorIndex && index < mForegroundColor.length) {
+            mForegroundColorIndex = index;
+            if (mGradient == null)
+                mForegroundPaint.setColor(mForegroundColor[index]);
+        }
+    }
+
     /**
      * Get the loading progress
      *
@@ -158,18 +259,6 @@ public abstract class LoadingDrawable extends Drawable implements android.graphi
         invalidateSelf();
     }
 
-    private final Runnable mAnim = new Runnable() {
-        @Override
-        public void run() {
-            if (mRun) {
-                onRefresh();
-                invalidateSelf();
-            } else {
-                unscheduleSelf(this);
-            }
-        }
-    };
-
     public boolean isRunning() {
         return mRun;
     }
@@ -177,32 +266,143 @@ public abstract class LoadingDrawable extends Drawable implements android.graphi
     public void start() {
         if (!mRun) {
             mRun = true;
-            scheduleSelf(mAnim, SystemClock.uptimeMillis() + FRAME_DURATION);
+            mLastFrameTime = -1;
+            if (isFrameDriven())
+                LoadingTicker.getInstance().add(this);
         }
     }
 
     public void stop() {
         if (mRun) {
             mRun = false;
-            unscheduleSelf(mAnim);
+            mParked = false;
+            LoadingTicker.getInstance().remove(this);
             invalidateSelf();
         }
     }
 
+    /**
+     * Set the frame rate of this drawable, it overrides {@link #setDefaultFrameRate(int)}
+     * The animation is time based, a lower frame rate keeps the same speed with fewer frames
+     *
+     * @param frameRate Frames per second, 0 means follow the default
+     */
+    public void setFrameRate(int frameRate) {
+        mFrameRate = Math.max(0, frameRate);
+    }
+
+    public int getFrameRate() {
+        return mFrameRate;
+    }
+
+    /**
+     * Set the frame rate of all loading drawables without their own frame rate,
+     * an app can lower it on its own signal, eg: thermal throttling
+     *
+     * @param frameRate Frames per second, 0 means follow the display
+     */
+    public static void setDefaultFrameRate(int frameRate) {
+        LoadingTicker.getInstance().setDefaultFrameRate(frameRate);
+    }
+
+    public static int getDefaultFrameRate() {
+        return LoadingTicker.getInstance().getDefaultFrameRate();
+    }
+
+    /**
+     * Cap the frame rate of all loading drawables while the device is in power save mode,
+     * the power save mode is followed from Android 5.0
+     *
+     * @param context   Context
+     * @param frameRate Frames per second, 0 means stop following the power save mode
+     */
+    public static void setPowerSaveFrameRate(Context context, int frameRate) {
+        LoadingTicker.getInstance().setPowerSaveFrameRate(context, frameRate);
+    }
+
+    /**
+     * Get the frame interval of the resolved frame rate
+     *
+     * @return Milliseconds, 0 means every frame
+     */
+    long getFrameInterval() {
+        int frameRate = LoadingTicker.getInstance().resolveFrameRate(mFrameRate);
+        return frameRate > 0 ? 1000 / frameRate : 0;
+    }
+
+    /**
+     * Whether the animation is advanced by {@link #onRefresh(long)} on every frame,
+     * a drawable animating by itself returns false and gets no frame ticks
+     *
+     * @return Need frame ticks
+     */
+    protected boolean isFrameDriven() {
+        return true;
+    }
+
+    /**
+     * Called by {@link LoadingTicker} when the drawable has no callback or is not visible,
+     * it gets no more ticks until it is drawn or made visible again
+     */
+    void park() {
+        mParked = true;
+    }
+
+    /**
+     * Put a parked drawable back on the ticker, the time it was parked is not animated
+     */
+    private void unpark() {
+        if (mParked) {
+            mParked = false;
+            mLastFrameTime = -1;
+            LoadingTicker.getInstance().add(this);
+        }
+    }
+
+    @Override
+    public boolean setVisible(boolean visible, boolean restart) {
+        boolean changed = super.setVisible(visible, restart);
+        if (visible)
+            unpark();
+        return changed;
+    }
+
+    /**
+     * Advance the animation by the real time elapsed since the last frame,
+     * so the speed is the same at any refresh rate.
+     * Called by {@link LoadingTicker} on every frame while running
+     *
+     * @param frameTime Frame time in milliseconds
+     */
+    void doFrame(long frameTime) {
+        if (!mRun)
+            return;
+        if (mLastFrameTime >= 0) {
+            long interval = getFrameInterval();
+            if (interval > 0 && frameTime - mLastFrameTime < interval - FRAME_RATE_SLACK)
+                return;
+        }
+        // the first frame after start only applies the current state
+        long elapsed = mLastFrameTime >= 0 ? frameTime - mLastFrameTime : 0;
+        if (elapsed >= 0)
+            onRefresh(elapsed);
+        mLastFrameTime = frameTime;
+        invalidateSelf();
+    }
+
     @Override
     public void draw(Canvas canvas) {
+        unpark();
         int count = canvas.save();
 
         final Paint bPaint = mBackgroundPaint;
         if (bPaint.getColor() != 0 && bPaint.getStrokeWidth() > 0)
-            drawBackground(canvas, bPaint);
+            drawBackgroundCache(canvas, bPaint);
 
         final Paint fPaint = mForegroundPaint;
         if (mRun) {
             if (fPaint.getColor() != 0 && fPaint.getStrokeWidth() > 0)
                 drawForeground(canvas, fPaint);
-            // invalidate next call in this
-            scheduleSelf(mAnim, SystemClock.uptimeMillis() + FRAME_DURATION);
         } else if (mProgress > 0) {
             if (fPaint.getColor() != 0 && fPaint.getStrokeWidth() > 0)
                 drawForeground(canvas, fPaint);
@@ -211,8 +411,62 @@ public abstract class LoadingDrawable extends Drawable implements android.graphi
         canvas.restoreToCount(count);
     }
 
+    private void drawBackgroundCache(Canvas canvas, Paint backgroundPaint) {
+        final Rect bounds = getBounds();
+        final Bitmap cache = mBackgroundCache;
+        if (cache == null)
+            return;
+        if (mBackgroundCacheDirty) {
+            cache.eraseColor(0);
+            final Canvas cacheCanvas = mBackgroundCacheCanvas;
+            int count = cacheCanvas.save();
+            cacheCanvas.translate(-bounds.left, -bounds.top);
+            drawBackground(cacheCanvas, backgroundPaint);
+            cacheCanvas.restoreToCount(count);
+            mBackgroundCacheDirty = false;
+        }
+        canvas.drawBitmap(cache, bounds.left, bounds.top, null);
+    }
+
+    /**
+     * Redraw the cached background on the next frame,
+     * call it after changing anything {@link #drawBackground(Canvas, Paint)} uses
+     */
+    protected void invalidateBackgroundCache() {
+        mBackgroundCacheDirty = true;
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        super.onBoundsChange(bounds);
+        updateBackgroundCache(bounds);
+        updateGradient();
+    }
+
+    /**
+     * Allocate the background cache for the new bounds, the old one is recycled
+     */
+    private void updateBackgroundCache(Rect bounds) {
+        invalidateBackgroundCache();
+        final Bitmap cache = mBackgroundCache;
+        if (cache != null && cache.getWidth() == bounds.width() && cache.getHeight() == bounds.height())
+            return;
+        if (cache != null) {
+            mBackgroundCacheCanvas.setBitmap(null);
+            cache.recycle();
+            mBackgroundCache = null;
+        }
+        if (!bounds.isEmpty()) {
+            mBackgroundCache = Bitmap.createBitmap(bounds.width(), bounds.height(), Bitmap.Config.ARGB_8888);
+            if (mBackgroundCacheCanvas == null)
+                mBackgroundCacheCanvas = new Canvas();
+            mBackgroundCacheCanvas.setBitmap(mBackgroundCache);
+        }
+    }
+
     @Override
     public void setAlpha(int alpha) {
+        mAlpha = alpha;
         mForegroundPaint.setAlpha(alpha);
     }
 
@@ -222,6 +476,7 @@ public abstract class LoadingDrawable extends Drawable implements android.graphi
         final Paint bPaint = mBackgroundPaint;
         if (bPaint.getColorFilter() != cf) {
             bPaint.setColorFilter(cf);
+            invalidateBackgroundCache();
             needRefresh = true;
         }
 
@@ -253,7 +508,12 @@ public abstract class LoadingDrawable extends Drawable implements android.graphi
     }
 
 
-    protected abstract void onRefresh();
+    /**
+     * Advance the animation state
+     *
+     * @param elapsed Milliseconds since the last frame
+     */
+    protected abstract void onRefresh(long elapsed);
 
     protected abstract void drawBackground(Canvas canvas, Paint backgroundPaint);
 
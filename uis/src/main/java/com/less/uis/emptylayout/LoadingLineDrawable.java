@@ -0,0 +1,131 @@
+package com.less.uis.emptylayout;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+/**
+ * A drawable to draw loading form Line Type
+ * <p>
+ * A horizontal bar, the progress is drawn from the left, the indeterminate state
+ * is two segments running from left to right.
+ * All segments are drawn by one drawLines call from a preallocated array,
+ * nothing is allocated per frame.
+ */
+public class LoadingLineDrawable extends LoadingDrawable {
+    /**
+     * One run of the segments, in milliseconds, the next foreground color is used after it
+     */
+    private static final long CYCLE_DURATION = 1800;
+    private static final int SEGMENT_COUNT = 2;
+    // length of each segment and its phase in the cycle, relative to the bar width
+    private static final float[] SEGMENT_LENGTH = {0.4f, 0.2f};
+    private static final float[] SEGMENT_PHASE = {0f, 0.5f};
+    private static final int DEFAULT_WIDTH = 56;
+
+    private final int mIntrinsicWidth;
+    private final float[] mPoints = new float[SEGMENT_COUNT * 4];
+    private int mSegmentCount;
+
+    private float mLineLeft;
+    private float mLineRight;
+    private float mLineY;
+
+    private long mAnimationTime = 0;
+
+    public LoadingLineDrawable() {
+        this(DEFAULT_WIDTH);
+    }
+
+    public LoadingLineDrawable(int intrinsicWidth) {
+        super();
+        mIntrinsicWidth = intrinsicWidth;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return (int) Math.ceil(Math.max(mBackgroundPaint.getStrokeWidth(), mForegroundPaint.getStrokeWidth()));
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return mIntrinsicWidth;
+    }
+
+    /**
+     * A sweep gradient around the center of a horizontal bar is meaningless,
+     * the bar keeps switching its colors
+     */
+    @Override
+    protected boolean supportsGradient() {
+        return false;
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        super.onBoundsChange(bounds);
+        // keep the round caps inside the bounds
+        final float cap = mForegroundPaint.getStrokeCap() == Paint.Cap.BUTT ? 0 : mForegroundPaint.getStrokeWidth() / 2;
+        mLineLeft = bounds.left + cap;
+        mLineRight = Math.max(mLineLeft, bounds.right - cap);
+        mLineY = bounds.exactCenterY();
+        if (isRunning())
+            applyAnimationTime(mAnimationTime);
+        else
+            onProgressChange(getProgress());
+    }
+
+    @Override
+    protected void onProgressChange(float progress) {
+        mSegmentCount = 0;
+        if (progress > 0)
+            setSegment(mLineLeft, mLineLeft + (mLineRight - mLineLeft) * Math.min(progress, 1));
+    }
+
+    @Override
+    protected void onRefresh(long elapsed) {
+        applyAnimationTime(mAnimationTime + elapsed);
+    }
+
+    private void applyAnimationTime(long time) {
+        mAnimationTime = Math.max(0, time);
+        final float fraction = (float) (mAnimationTime % CYCLE_DURATION) / CYCLE_DURATION;
+        final float width = mLineRight - mLineLeft;
+
+        mSegmentCount = 0;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            // the head runs from the left edge until the tail leaves the right edge
+            final float phase = (fraction + SEGMENT_PHASE[i]) % 1f;
+            final float length = width * SEGMENT_LENGTH[i];
+            final float head = mLineLeft + (width + length) * phase;
+            final float start = Math.max(mLineLeft, head - length);
+            final float end = Math.min(mLineRight, head);
+            if (end > start)
+                setSegment(start, end);
+        }
+
+        final int[] colors = getForegroundColor();
+        if (colors.length > 1)
+            setForegroundColorIndex((int) ((mAnimationTime / CYCLE_DURATION) % colors.length));
+    }
+
+    private void setSegment(float start, float end) {
+        final int index = mSegmentCount * 4;
+        mPoints[index] = start;
+        mPoints[index + 1] = mLineY;
+        mPoints[index + 2] = end;
+        mPoints[index + 3] = mLineY;
+        mSegmentCount++;
+    }
+
+    @Override
+    protected void drawBackground(Canvas canvas, Paint backgroundPaint) {
+        canvas.drawLine(mLineLeft, mLineY, mLineRight, mLineY, backgroundPaint);
+    }
+
+    @Override
+    protected void drawForeground(Canvas canvas, Paint foregroundPaint) {
+        if (mSegmentCount > 0)
+            canvas.drawLines(mPoints, 0, mSegmentCount * 4, foregroundPaint);
+    }
+}
@@ -0,0 +1,205 @@
+package com.less.uis.emptylayout;
+
+import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+
+/**
+ * A process wide ticker for all running {@link LoadingDrawable}s
+ * <p>
+ * One frame callback advances every running drawable in a single loop,
+ * so the main thread traffic does not grow with the count of visible loadings.
+ * When nothing is running no callback is posted at all.
+ * It also holds the global frame rate policy, when every running drawable
+ * is throttled the next callback is delayed instead of waking up on every vsync.
+ * A running drawable without a callback or not visible is parked instead of ticked,
+ * its next {@link LoadingDrawable#draw(android.graphics.Canvas)} brings it back.
+ * Must be used on the main thread.
+ */
+final class LoadingTicker {
+    private static LoadingTicker sInstance;
+
+    private final ArrayList<LoadingDrawable> mDrawables = new ArrayList<>();
+    // reused copy for the frame loop, a drawable may stop itself while ticking
+    private final ArrayList<LoadingDrawable> mTicking = new ArrayList<>();
+    private boolean mFrameScheduled;
+    // uptime the pending frame is due at, a later one is replaced by a sooner one
+    private long mFrameDueTime;
+
+    // frame rate policy, 0 means follow the display
+    private int mDefaultFrameRate;
+    private int mPowerSaveFrameRate;
+    private boolean mPowerSaveMode;
+    private Context mPowerSaveContext;
+    private BroadcastReceiver mPowerSaveReceiver;
+
+    private Handler mHandler;
+    private Choreographer.FrameCallback mVsyncCallback;
+
+    /**
+     * Fallback frame tick before Jelly Bean, which has no Choreographer
+     */
+    private final Runnable mAnim = new Runnable() {
+        @Override
+        public void run() {
+            mFrameScheduled = false;
+            doFrame(SystemClock.uptimeMillis());
+        }
+    };
+
+    static LoadingTicker getInstance() {
+        if (sInstance == null)
+            sInstance = new LoadingTicker();
+        return sInstance;
+    }
+
+    private LoadingTicker() {
+    }
+
+    void add(LoadingDrawable drawable) {
+        if (mDrawables.contains(drawable))
+            return;
+        mDrawables.add(drawable);
+        long interval = drawable.getFrameInterval();
+        long delay = interval > Animatable.FRAME_DURATION ? interval - Animatable.FRAME_DURATION : 0;
+        if (mFrameScheduled && mFrameDueTime > SystemClock.uptimeMillis() + delay) {
+            // a throttled frame is pending, do not let the new drawable wait for it
+            unscheduleFrame();
+        }
+        scheduleFrame();
+    }
+
+    void remove(LoadingDrawable drawable) {
+        mDrawables.remove(drawable);
+        if (mDrawables.isEmpty())
+            unscheduleFrame();
+    }
+
+    void setDefaultFrameRate(int frameRate) {
+        mDefaultFrameRate = Math.max(0, frameRate);
+    }
+
+    int getDefaultFrameRate() {
+        return mDefaultFrameRate;
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    void setPowerSaveFrameRate(Context context, int frameRate) {
+        mPowerSaveFrameRate = Math.max(0, frameRate);
+        // power save mode is only reported from Lollipop
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP)
+            return;
+        if (mPowerSaveContext == null)
+            mPowerSaveContext = context.getApplicationContext();
+        final PowerManager pm = (PowerManager) mPowerSaveContext.getSystemService(Context.POWER_SERVICE);
+        if (mPowerSaveFrameRate > 0 && mPowerSaveReceiver == null) {
+            mPowerSaveReceiver = new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    mPowerSaveMode = pm.isPowerSaveMode();
+                }
+            };
+            mPowerSaveContext.registerReceiver(mPowerSaveReceiver,
+                    new IntentFilter(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED));
+        } else if (mPowerSaveFrameRate == 0 && mPowerSaveReceiver != null) {
+            mPowerSaveContext.unregisterReceiver(mPowerSaveReceiver);
+            mPowerSaveReceiver = null;
+        }
+        mPowerSaveMode = mPowerSaveFrameRate > 0 && pm.isPowerSaveMode();
+    }
+
+    /**
+     * Resolve the frame rate of a drawable, the drawable's own rate
+     * overrides the default one, power save mode caps both
+     *
+     * @param frameRate The drawable's own frame rate, 0 means not set
+     * @return Frame rate, 0 means follow the display
+     */
+    int resolveFrameRate(int frameRate) {
+        int rate = frameRate > 0 ? frameRate : mDefaultFrameRate;
+        if (mPowerSaveMode && mPowerSaveFrameRate > 0)
+            rate = rate > 0 ? Math.min(rate, mPowerSaveFrameRate) : mPowerSaveFrameRate;
+        return rate;
+    }
+
+    private void doFrame(long frameTime) {
+        final ArrayList<LoadingDrawable> ticking = mTicking;
+        ticking.addAll(mDrawables);
+        long minInterval = Long.MAX_VALUE;
+        for (int i = 0; i < ticking.size(); i++) {
+            LoadingDrawable drawable = ticking.get(i);
+            if (drawable.getCallback() == null || !drawable.isVisible()) {
+                // nothing would draw the frame
+                mDrawables.remove(drawable);
+                drawable.park();
+                continue;
+            }
+            drawable.doFrame(frameTime);
+            minInterval = Math.min(minInterval, drawable.getFrameInterval());
+        }
+        ticking.clear();
+
+        if (!mDrawables.isEmpty()) {
+            // skip the vsyncs no drawable needs
+            scheduleFrame(minInterval > Animatable.FRAME_DURATION ? minInterval - Animatable.FRAME_DURATION : 0);
+        }
+    }
+
+    private void scheduleFrame() {
+        scheduleFrame(0);
+    }
+
+    private void scheduleFrame(long delay) {
+        // only one pending frame at any time
+        if (mFrameScheduled)
+            return;
+        mFrameScheduled = true;
+        mFrameDueTime = SystemClock.uptimeMillis() + delay;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            Choreographer.getInstance().postFrameCallbackDelayed(getVsyncCallback(), delay);
+        } else {
+            getHandler().postAtTime(mAnim, SystemClock.uptimeMillis() + Animatable.FRAME_DURATION + delay);
+        }
+    }
+
+    private void unscheduleFrame() {
+        if (!mFrameScheduled)
+            return;
+        mFrameScheduled = false;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            Choreographer.getInstance().removeFrameCallback(getVsyncCallback());
+        } else {
+            getHandler().removeCallbacks(mAnim);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private Choreographer.FrameCallback getVsyncCallback() {
+        if (mVsyncCallback == null) {
+            mVsyncCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    mFrameScheduled = false;
+                    LoadingTicker.this.doFrame(frameTimeNanos / 1000000);
+                }
+            };
+        }
+        return mVsyncCallback;
+    }
+
+    private Handler getHandler() {
+        if (mHandler == null)
+            mHandler = new Handler(Looper.getMainLooper());
+        return mHandler;
+    }
+}
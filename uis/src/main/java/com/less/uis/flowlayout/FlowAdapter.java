@@ -0,0 +1,471 @@
+package com.less.uis.flowlayout;
+
+import android.view.View;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * FlowLayout的数据适配器
+ *
+ * <p>
+ *     说明: 每个数据对应FlowLayout中的一个childView,数据的下标即childView的position.
+ *     setItems先跳过新旧数据首尾相同的部分,中间的部分按getItemKey配对: 配对上的childView保留(只移动不在最长递增子序列中的),
+ *     没有配对上的优先复用原有的childView重新绑定,多余的childView放入回收池,需要新增时优先从回收池中取出,
+ *     所以单个移动或交换只会移动对应的childView,反复刷新数据也不会不停的创建和丢弃childView.
+ *     setFilter按前缀过滤时只切换标签的VISIBLE和GONE,不会重新创建childView.
+ * </p>
+ */
+public abstract class FlowAdapter<T> {
+    private static final int MAX_SCRAP_SIZE = 64;
+
+    private List<T> mItems = new ArrayList<>();
+    private final List<View> mScrapViews = new ArrayList<>();
+
+    private FlowLayout mFlowLayout;
+    private OnItemClickListener<T> mOnItemClickListener;
+
+    // 当前的过滤前缀,null表示不过滤
+    private String mFilter;
+    // 前缀索引,第一次过滤时建立,数据变化后失效
+    private FlowPrefixIndex mPrefixIndex;
+    // 当前显示的position,升序排列,null表示全部显示
+    private int[] mMatches;
+
+    public interface OnItemClickListener<T> {
+        void onItemClick(int position, T item);
+    }
+
+    /**
+     * onCreateView 创建一个标签,点击事件由FlowLayout统一分发,不要再单独设置OnClickListener
+     */
+    protected abstract View onCreateView(FlowLayout parent);
+
+    /**
+     * onBindView 把数据绑定到标签上,标签可能是从回收池中取出的
+     */
+    protected abstract void onBindView(View view, T item);
+
+    /**
+     * areItemsTheSame 判断新旧数据是否相同,相同的数据不会重新绑定
+     */
+    protected boolean areItemsTheSame(T oldItem, T newItem) {
+        return oldItem == null ? newItem == null : oldItem.equals(newItem);
+    }
+
+    /**
+     * getItemKey setItems时用来配对新旧数据的稳定标识,需要实现equals和hashCode,默认为数据本身
+     *
+     * 标识相同但内容不同(areItemsTheSame返回false)的数据会保留原来的childView并重新绑定.
+     */
+    protected Object getItemKey(T item) {
+        return item;
+    }
+
+    public int getCount() {
+        return mItems.size();
+    }
+
+    public T getItem(int position) {
+        return mItems.get(position);
+    }
+
+    public List<T> getItems() {
+        return Collections.unmodifiableList(mItems);
+    }
+
+    /**
+     * getFilterText 过滤时用来匹配前缀的文字,默认为String.valueOf(item)
+     */
+    protected CharSequence getFilterText(T item) {
+        return String.valueOf(item);
+    }
+
+    /**
+     * setFilter 只显示文字以prefix开头的标签(不区分大小写),其余的标签设置为GONE,prefix为空时全部显示
+     *
+     * 只比较新旧两次匹配到的position,修改显示状态发生变化的标签,每次过滤的耗时和匹配到的数量成正比.
+     */
+    public void setFilter(CharSequence prefix) {
+        String filter = prefix == null || prefix.length() == 0 ? null : prefix.toString();
+        if (filter == null ? mFilter == null : filter.equals(mFilter)) {
+            return;
+        }
+        mFilter = filter;
+        int[] oldMatches = mMatches;
+        mMatches = findMatches();
+        if (mFlowLayout == null) {
+            return;
+        }
+        if (oldMatches == null || mMatches == null) {
+            applyFilter();
+        } else {
+            updateVisibility(oldMatches, mMatches);
+        }
+    }
+
+    public CharSequence getFilter() {
+        return mFilter;
+    }
+
+    public void setOnItemClickListener(OnItemClickListener<T> onItemClickListener) {
+        mOnItemClickListener = onItemClickListener;
+    }
+
+    /**
+     * setItems 设置新的数据,只绑定,插入,移除或移动发生变化的部分
+     */
+    public void setItems(List<T> items) {
+        List<T> newItems = items == null ? new ArrayList<T>() : new ArrayList<>(items);
+        List<T> oldItems = mItems;
+        int oldSize = oldItems.size();
+        int newSize = newItems.size();
+        int minSize = Math.min(oldSize, newSize);
+
+        // 跳过首尾相同的部分
+        int prefix = 0;
+        while (prefix < minSize && areItemsTheSame(oldItems.get(prefix), newItems.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < minSize - prefix
+                && areItemsTheSame(oldItems.get(oldSize - 1 - suffix), newItems.get(newSize - 1 - suffix))) {
+            suffix++;
+        }
+        mItems = newItems;
+        mPrefixIndex = null;
+        mMatches = findMatches();
+
+        FlowLayout layout = mFlowLayout;
+        if (layout == null) {
+            return;
+        }
+        int oldMiddle = oldSize - prefix - suffix;
+        int newMiddle = newSize - prefix - suffix;
+        if (oldMiddle == 0) {
+            insertViews(prefix, newMiddle);
+        } else if (newMiddle == 0) {
+            removeViews(prefix, oldMiddle);
+        } else {
+            applyDiff(oldItems, prefix, oldMiddle, newMiddle);
+        }
+        if (mFilter != null) {
+            applyFilter();
+        }
+    }
+
+    /**
+     * applyDiff 把[prefix, prefix + oldMiddle)处的childView变成新数据[prefix, prefix + newMiddle)
+     *
+     * 新旧数据按getItemKey配对,配对上的数据在旧数据中的下标构成的最长递增子序列保持不动,其余配对上的childView暂时取出再放到新的位置,
+     * 没有配对上的新数据优先复用同一位置没有配对上的旧childView,不够时插入,多余的旧childView移除.
+     */
+    private void applyDiff(List<T> oldItems, int prefix, int oldMiddle, int newMiddle) {
+        FlowLayout layout = mFlowLayout;
+        List<T> newItems = mItems;
+
+        // 按标识配对,重复的标识按先后顺序配对
+        HashMap<Object, ArrayDeque<Integer>> oldKeys = new HashMap<>(oldMiddle * 2);
+        for (int k = 0; k < oldMiddle; k++) {
+            Object key = getItemKey(oldItems.get(prefix + k));
+            ArrayDeque<Integer> positions = oldKeys.get(key);
+            if (positions == null) {
+                positions = new ArrayDeque<>(1);
+                oldKeys.put(key, positions);
+            }
+            positions.add(k);
+        }
+        // source[j]: 新数据j配对的旧数据下标,没有配对为-1; target[k]: 旧数据k配对的新数据下标
+        int[] source = new int[newMiddle];
+        int[] target = new int[oldMiddle];
+        Arrays.fill(target, -1);
+        for (int j = 0; j < newMiddle; j++) {
+            ArrayDeque<Integer> positions = oldKeys.get(getItemKey(newItems.get(prefix + j)));
+            if (positions == null || positions.isEmpty()) {
+                source[j] = -1;
+            } else {
+                int k = positions.poll();
+                source[j] = k;
+                target[k] = j;
+            }
+        }
+        boolean[] stay = findLongestIncreasing(source);
+
+        // 取出需要移动的childView,从后往前取不影响前面的下标
+        View[] moving = new View[oldMiddle];
+        boolean[] movingSelected = new boolean[oldMiddle];
+        for (int k = oldMiddle - 1; k >= 0; k--) {
+            if (target[k] >= 0 && !stay[target[k]]) {
+                moving[k] = layout.getChildAt(prefix + k);
+                movingSelected[k] = layout.detachChip(prefix + k);
+            }
+        }
+
+        // 剩下的旧childView按原来的顺序排在position之后,k指向position处的那一个
+        int position = prefix;
+        int k = nextRemaining(target, stay, 0);
+        for (int j = 0; j < newMiddle; j++, position++) {
+            T item = newItems.get(prefix + j);
+            int from = source[j];
+            if (from < 0) {
+                if (k < oldMiddle && target[k] < 0) {
+                    // 同一位置没有配对上的旧childView直接重新绑定,旧数据的选中状态不带给新数据
+                    layout.clearChipSelected(position);
+                    onBindView(layout.getChildAt(position), item);
+                    k = nextRemaining(target, stay, k + 1);
+                } else {
+                    insertViews(position, 1);
+                }
+                continue;
+            }
+            if (stay[j]) {
+                // 它前面没有配对上的旧childView都要移除
+                int count = 0;
+                while (k != from) {
+                    count++;
+                    k = nextRemaining(target, stay, k + 1);
+                }
+                if (count > 0) {
+                    removeViews(position, count);
+                }
+                k = nextRemaining(target, stay, k + 1);
+            } else {
+                layout.attachChip(moving[from], position, movingSelected[from]);
+            }
+            if (!areItemsTheSame(oldItems.get(prefix + from), item)) {
+                onBindView(layout.getChildAt(position), item);
+            }
+        }
+        // 剩下的旧childView都没有配对上
+        int count = 0;
+        while (k < oldMiddle) {
+            count++;
+            k = nextRemaining(target, stay, k + 1);
+        }
+        if (count > 0) {
+            removeViews(position, count);
+        }
+    }
+
+    /**
+     * nextRemaining 从k开始找到下一个没有被取出的旧数据下标,即没有配对上的或者保持不动的
+     */
+    private static int nextRemaining(int[] target, boolean[] stay, int k) {
+        while (k < target.length && target[k] >= 0 && !stay[target[k]]) {
+            k++;
+        }
+        return k;
+    }
+
+    /**
+     * findLongestIncreasing 找出source中(忽略-1)最长的递增子序列,返回每个位置是否在其中
+     */
+    private static boolean[] findLongestIncreasing(int[] source) {
+        int n = source.length;
+        // tails[l]: 长度为l+1的递增子序列结尾最小的位置; previous[j]: 以j结尾的子序列的前一个位置
+        int[] tails = new int[n];
+        int[] previous = new int[n];
+        int length = 0;
+        for (int j = 0; j < n; j++) {
+            if (source[j] < 0) {
+                continue;
+            }
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (source[tails[mid]] < source[j]) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            previous[j] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = j;
+            if (low == length) {
+                length++;
+            }
+        }
+        boolean[] stay = new boolean[n];
+        for (int j = length > 0 ? tails[length - 1] : -1; j >= 0; j = previous[j]) {
+            stay[j] = true;
+        }
+        return stay;
+    }
+
+    /**
+     * appendItems 在末尾追加数据
+     *
+     * 只会创建和绑定追加的标签,FlowLayout会接着最后一排继续排列,之前的标签不会重新测量和布局.
+     */
+    public void appendItems(List<T> items) {
+        if (items == null || items.isEmpty()) {
+            return;
+        }
+        int position = mItems.size();
+        mItems.addAll(items);
+        // 索引只追加新的文字,不重新建立
+        if (mPrefixIndex != null) {
+            List<CharSequence> texts = new ArrayList<>(items.size());
+            for (T item : items) {
+                texts.add(getFilterText(item));
+            }
+            mPrefixIndex.append(texts);
+        }
+        if (mFilter != null) {
+            mMatches = findMatches();
+        }
+        if (mFlowLayout != null) {
+            insertViews(position, items.size());
+            // 之前的标签显示状态不变,只处理追加的部分
+            if (mFilter != null) {
+                for (int i = position; i < mItems.size(); i++) {
+                    mFlowLayout.getChildAt(i).setVisibility(isMatched(i) ? View.VISIBLE : View.GONE);
+                }
+            }
+        }
+    }
+
+    /**
+     * notifyItemChanged 数据内容发生变化时重新绑定对应的标签
+     */
+    public void notifyItemChanged(int position) {
+        if (mPrefixIndex != null) {
+            mPrefixIndex = null;
+            if (mFilter != null) {
+                mMatches = findMatches();
+            }
+        }
+        if (mFlowLayout != null) {
+            onBindView(mFlowLayout.getChildAt(position), mItems.get(position));
+            if (mFilter != null) {
+                setChipVisible(mFlowLayout.getChildAt(position), isMatched(position));
+            }
+        }
+    }
+
+    /**
+     * moveItem 拖动排序后移动数据,childView已经由FlowLayout移动好
+     */
+    void moveItem(int from, int to) {
+        mItems.add(to, mItems.remove(from));
+        mPrefixIndex = null;
+        mMatches = findMatches();
+    }
+
+    void attach(FlowLayout layout) {
+        mFlowLayout = layout;
+        insertViews(0, mItems.size());
+        if (mFilter != null) {
+            applyFilter();
+        }
+    }
+
+    void detach() {
+        mFlowLayout = null;
+        mScrapViews.clear();
+    }
+
+    void performItemClick(int position) {
+        if (mOnItemClickListener != null && position >= 0 && position < mItems.size()) {
+            mOnItemClickListener.onItemClick(position, mItems.get(position));
+        }
+    }
+
+    private void insertViews(int position, int count) {
+        FlowLayout layout = mFlowLayout;
+        for (int i = position; i < position + count; i++) {
+            View view = obtainView();
+            onBindView(view, mItems.get(i));
+            layout.addChip(view, i);
+        }
+    }
+
+    private void removeViews(int position, int count) {
+        FlowLayout layout = mFlowLayout;
+        // 开启动画时移除的标签还要淡出,不能马上复用
+        int scrapLimit = layout.isChangeAnimationEnabled() ? 0 : MAX_SCRAP_SIZE;
+        for (int i = position; i < position + count && mScrapViews.size() < scrapLimit; i++) {
+            mScrapViews.add(layout.getChildAt(i));
+        }
+        layout.removeChips(position, count);
+    }
+
+    private int[] findMatches() {
+        if (mFilter == null) {
+            return null;
+        }
+        if (mPrefixIndex == null) {
+            List<CharSequence> texts = new ArrayList<>(mItems.size());
+            for (T item : mItems) {
+                texts.add(getFilterText(item));
+            }
+            mPrefixIndex = new FlowPrefixIndex(texts);
+        }
+        return mPrefixIndex.find(mFilter);
+    }
+
+    private boolean isMatched(int position) {
+        return mMatches == null || Arrays.binarySearch(mMatches, position) >= 0;
+    }
+
+    /**
+     * applyFilter 按mMatches设置所有标签的显示状态,只在开始或结束过滤以及数据变化时调用
+     */
+    private void applyFilter() {
+        int[] matches = mMatches;
+        int next = 0;
+        for (int i = 0; i < mItems.size(); i++) {
+            boolean visible = matches == null;
+            if (!visible && next < matches.length && matches[next] == i) {
+                visible = true;
+                next++;
+            }
+            setChipVisible(mFlowLayout.getChildAt(i), visible);
+        }
+    }
+
+    /**
+     * updateVisibility 合并两个有序的position数组,只修改前后显示状态不一致的标签
+     */
+    private void updateVisibility(int[] oldMatches, int[] newMatches) {
+        int i = 0;
+        int j = 0;
+        while (i < oldMatches.length || j < newMatches.length) {
+            int oldPosition = i < oldMatches.length ? oldMatches[i] : Integer.MAX_VALUE;
+            int newPosition = j < newMatches.length ? newMatches[j] : Integer.MAX_VALUE;
+            if (oldPosition == newPosition) {
+                i++;
+                j++;
+            } else if (oldPosition < newPosition) {
+                setChipVisible(mFlowLayout.getChildAt(oldPosition), false);
+                i++;
+            } else {
+                setChipVisible(mFlowLayout.getChildAt(newPosition), true);
+                j++;
+            }
+        }
+    }
+
+    private static void setChipVisible(View view, boolean visible) {
+        int visibility = visible ? View.VISIBLE : View.GONE;
+        if (view.getVisibility() != visibility) {
+            view.setVisibility(visibility);
+        }
+    }
+
+    private View obtainView() {
+        int size = mScrapViews.size();
+        if (size > 0) {
+            // 回收的标签可能是被过滤掉的
+            View view = mScrapViews.remove(size - 1);
+            view.setVisibility(View.VISIBLE);
+            return view;
+        }
+        return onCreateView(mFlowLayout);
+    }
+}
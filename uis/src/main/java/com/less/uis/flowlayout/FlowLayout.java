@@ -1,20 +1,26 @@
 package com.less.uis.flowlayout;
 
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Color;
+import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.util.TypedValue;
 import android.view.Gravity;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
 import com.less.uis.R;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -32,6 +38,10 @@ import java.util.List;
  */
 
 public class FlowLayout  extends ViewGroup {
+    public static final int CHOICE_MODE_NONE = 0;
+    public static final int CHOICE_MODE_SINGLE = 1;
+    public static final int CHOICE_MODE_MULTIPLE = 2;
+
     private float mVerticalSpacing;
     private float mHorizontalSpacing;
     private int mTextColor;
@@ -41,14 +51,100 @@ public class FlowLayout  extends ViewGroup {
     private int mTextPaddingH;
     private int mTextPaddingV;
 
-    private int x_index = 0;
-    private int y_index = 1;
+    // 每个childView的座位: 左边坐标以及第几排,下标即childView的position
+    private int[] mChildLeft = new int[0];
+    private int[] mChildRow = new int[0];
+    private boolean[] mChildGone = new boolean[0];
+    // 每一排第一个可见childView的position,每一排的高度(这一排最高的childView)以及顶部坐标
+    // mRowTop是mRowHeight加上间距的前缀和,下标mRowCount处即最后一排之下的位置
+    private int[] mRowStart = new int[1];
+    private int[] mRowHeight = new int[1];
+    private int[] mRowTop = new int[2];
+    private int mRowCount;
+
+    /**
+     * 测量缓存: 上一次排列时的测量规格,padding以及childView个数.
+     * mDirtyFrom之前的childView与上一次排列完全一致,只需从它所在的那一排开始重新排列;
+     * mLayoutFrom之前的childView座位没有变化,onLayout可以跳过.
+     */
+    private int mLastWidthSpec;
+    private int mLastHeightSpec;
+    private int mLastPaddingLeft;
+    private int mLastPaddingTop;
+    private int mLastPaddingRight;
+    private int mPackedCount;
+    // 最后一排已经占用的宽度和个数,末尾追加时从这里继续排列
+    private int mTailUsed;
+    private int mTailColumn;
+    private int mDirtyFrom = 0;
+    private int mLayoutFrom = 0;
+
+    private FlowAdapter<?> mAdapter;
+    private FlowTextMeasurer.Result mPrecomputedSizes;
+    // 等待第一次测量时使用的排列快照
+    private FlowSnapshot mPendingSnapshot;
+
+    // 最多显示的行数,<=0表示不限制.超出的childView不测量也不布局,position从mPackedCount开始
+    private int mMaxLines;
+    private int mHiddenCount;
+    // 折叠时显示在最后一排末尾的"+N"标签,始终是最后一个childView
+    private View mOverflowView;
+    private OnOverflowListener mOnOverflowListener;
+    private int mReportedHiddenCount = -1;
+
+    // 选择模式,选中状态按position保存,标签本身的selected状态与之同步
+    private int mChoiceMode = CHOICE_MODE_NONE;
+    private final BitSet mSelection = new BitSet();
+    private OnSelectionChangedListener mOnSelectionChangedListener;
 
-    private List<ViewTag> viewTags = new LinkedList<>();
+    // 长按拖动排序,拖动过程中只修改translation,松手后才移动childView并从受影响的那一排重新排列
+    private static final int DRAG_SHIFT_DURATION = 150;
+    private static final float DRAG_SCALE = 1.1f;
+    private boolean mDragEnabled;
+    private OnItemMovedListener mOnItemMovedListener;
+    private float mLastDownX;
+    private float mLastDownY;
+    private View mDragView;
+    private int mDragFrom = -1;
+    private int mDragTarget = -1;
+    // 松手后拖动的标签从手指的位置滑到新的座位
+    private View mSettleView;
+    private float mSettleX;
+    private float mSettleY;
+
+    // 插入和移除标签的动画,布局时算出新旧座位的差值,之后只修改translation和alpha,动画过程中不再请求布局
+    private static final int CHANGE_DURATION = 200;
+    private boolean mChangeAnimationEnabled;
+    // 插入,移除或移动了标签,下一次布局需要动画;宽度变化,旋转和过滤引起的布局不做动画
+    private boolean mChangePending;
+    private final List<View> mDisappearingChips = new ArrayList<>();
+    private boolean mOverflowShown;
+    private int mOverflowLeft;
 
     public interface OnFlowItemClickListener {
         void onItemClick(String message);
     }
+
+    public interface OnOverflowListener {
+        /**
+         * 被折叠的标签个数变化时回调,可以在这里更新overflowView的文字,例如"+N"
+         */
+        void onOverflow(View overflowView, int hiddenCount);
+    }
+
+    public interface OnSelectionChangedListener {
+        /**
+         * 选中状态变化时回调,[fromPosition, toPosition)之外的标签状态没有变化
+         */
+        void onSelectionChanged(int fromPosition, int toPosition);
+    }
+
+    public interface OnItemMovedListener {
+        /**
+         * 拖动排序松手后回调,适配器中的数据已经移动到新的位置
+         */
+        void onItemMoved(int fromPosition, int toPosition);
+    }
     public FlowLayout(Context context) {
         this(context, null);
     }
@@ -65,6 +161,7 @@ public class FlowLayout  extends ViewGroup {
         mTvBackground = a.getResourceId(R.styleable.FlowLayout_mTvBackground,R.drawable.flow_text_selector);
         mTextPaddingH = a.getDimensionPixelOffset(R.styleable.FlowLayout_mTextPaddingH,dip2px(10));
         mTextPaddingV = a.getDimensionPixelOffset(R.styleable.FlowLayout_mTextPaddingV,dip2px(4));
+        mMaxLines = a.getInt(R.styleable.FlowLayout_android_maxLines, 0);
         a.recycle();
     }
     public void setFlowListener(List<String> list, boolean sort,final OnFlowItemClickListener onFlowItemClickListener) {
@@ -85,33 +182,740 @@ public class FlowLayout  extends ViewGroup {
         }
         setFlowListener(list,onFlowItemClickListener);
     }
+    /**
+     * setFlowListener 在已有标签之后追加文字标签
+     *
+     * 内部使用{@link TextFlowAdapter},传入的监听只接收这一次追加的标签的点击,之前追加的标签仍然分发给各自的监听.
+     * 刷新数据请使用{@link #setAdapter(FlowAdapter)}和{@link FlowAdapter#setItems(List)}.
+     */
     public void setFlowListener(List<String> list, final OnFlowItemClickListener onFlowItemClickListener) {
-        for (int i = 0; i < list.size(); i++) {
-            final TextView tv = new TextView(getContext());
-
-            tv.setText(list.get(i));
-            tv.setTextSize(TypedValue.COMPLEX_UNIT_PX, mTextSize);
-            tv.setTextColor(mTextColor);
-            tv.setGravity(Gravity.CENTER);
-            tv.setPadding(mTextPaddingH, mTextPaddingV, mTextPaddingH, mTextPaddingV);
-            tv.setBackgroundResource(mTvBackground);
-            tv.setClickable(true);
-            this.addView(tv,new MyLayoutParams(LayoutParams.WRAP_CONTENT,LayoutParams.WRAP_CONTENT));
-            tv.setOnClickListener(new OnClickListener() {
-                @Override
-                public void onClick(View v) {
-                    onFlowItemClickListener.onItemClick(tv.getText().toString());
+        TextFlowAdapter adapter;
+        if (mAdapter instanceof TextFlowAdapter) {
+            adapter = (TextFlowAdapter) mAdapter;
+        } else {
+            adapter = new TextFlowAdapter();
+            setAdapter(adapter);
+        }
+        adapter.setOnItemClickListener(mFlowItemClickDispatcher);
+
+        int position = adapter.getCount();
+        adapter.appendItems(list);
+        // 监听跟随标签,拖动排序或者setItems移动标签之后仍然有效
+        for (int i = position; i < adapter.getCount(); i++) {
+            getChildAt(i).setTag(R.id.flow_item_click_listener, onFlowItemClickListener);
+        }
+    }
+
+    /**
+     * setFlowListener追加的标签的点击分发,交给标签自己记录的监听
+     */
+    private final FlowAdapter.OnItemClickListener<String> mFlowItemClickDispatcher = new FlowAdapter.OnItemClickListener<String>() {
+        @Override
+        public void onItemClick(int position, String item) {
+            Object listener = getChildAt(position).getTag(R.id.flow_item_click_listener);
+            if (listener instanceof OnFlowItemClickListener) {
+                ((OnFlowItemClickListener) listener).onItemClick(item);
+            }
+        }
+    };
+
+    /**
+     * setPrecomputedSizes 设置{@link FlowTextMeasurer}在后台计算好的标签尺寸,传null清除
+     *
+     * 尺寸按position对应,测量时会核对标签文字,所以可以在{@link FlowAdapter#setItems(List)}之前或之后设置.
+     */
+    public void setPrecomputedSizes(FlowTextMeasurer.Result sizes) {
+        mPrecomputedSizes = sizes;
+    }
+
+    /**
+     * exportSnapshot 导出当前的排列结果,布局完成之后调用,没有设置适配器时返回null
+     */
+    public FlowSnapshot exportSnapshot() {
+        if (mAdapter == null) {
+            return null;
+        }
+        int count = Math.min(mPackedCount, getFlowChildCount());
+        int[] widths = new int[count];
+        int[] heights = new int[count];
+        for (int i = 0; i < count; i++) {
+            if (!mChildGone[i]) {
+                View child = getChildAt(i);
+                widths[i] = child.getMeasuredWidth();
+                heights[i] = child.getMeasuredHeight();
+            }
+        }
+        int availableWidth = getMeasuredWidth() - getPaddingLeft() - getPaddingRight();
+        return new FlowSnapshot(availableWidth, (int) mHorizontalSpacing, (int) mVerticalSpacing,
+                getPaddingLeft(), getPaddingTop(), getPaddingRight(), getPaddingBottom(),
+                mTextSize, getResources().getDisplayMetrics().density, mAdapter.getItems().hashCode(), widths, heights);
+    }
+
+    /**
+     * restoreSnapshot 设置冷启动时的排列快照,在设置数据之后,第一次测量之前调用
+     *
+     * 第一次测量时如果可用宽度,间距,padding,文字大小,屏幕密度和数据都与快照一致,标签直接使用快照中的尺寸,不再测量文字.
+     */
+    public void restoreSnapshot(FlowSnapshot snapshot) {
+        mPendingSnapshot = snapshot;
+    }
+
+    /**
+     * setMaxLines 设置最多显示的行数,<=0表示不限制
+     *
+     * 展开和折叠只是从受影响的那一排重新排列,不会重新创建标签;已经测量过的标签沿用之前的测量结果.
+     */
+    public void setMaxLines(int maxLines) {
+        if (mMaxLines == maxLines) {
+            return;
+        }
+        int visibleRows = Math.min(maxLines > 0 ? maxLines : Integer.MAX_VALUE, mRowCount);
+        mMaxLines = maxLines;
+        markDirty(visibleRows > 1 ? mRowStart[visibleRows - 1] : 0);
+        requestLayout();
+    }
+
+    public int getMaxLines() {
+        return mMaxLines;
+    }
+
+    /**
+     * getHiddenCount 因为超出最大行数而没有显示的标签个数
+     */
+    public int getHiddenCount() {
+        return mHiddenCount;
+    }
+
+    /**
+     * setOverflowView 设置折叠时显示在最后一排末尾的标签,没有折叠时不显示
+     *
+     * 最后一排放不下时会从末尾再折叠几个标签给它腾出位置.可以给它设置点击事件,在其中调用{@link #setMaxLines(int)}展开.
+     */
+    public void setOverflowView(View overflowView, OnOverflowListener onOverflowListener) {
+        if (mOverflowView != null) {
+            View old = mOverflowView;
+            mOverflowView = null;
+            removeView(old);
+        }
+        mOnOverflowListener = onOverflowListener;
+        mReportedHiddenCount = -1;
+        mOverflowShown = false;
+        if (overflowView != null) {
+            addView(overflowView);
+            mOverflowView = overflowView;
+        }
+        markDirty(mRowCount > 0 ? mRowStart[mRowCount - 1] : 0);
+        requestLayout();
+    }
+
+    /**
+     * getFlowChildCount 参与排列的childView个数,不包含overflowView
+     */
+    private int getFlowChildCount() {
+        int childCount = getChildCount();
+        return mOverflowView != null ? childCount - 1 : childCount;
+    }
+
+    @Override
+    public void addView(View child, int index, ViewGroup.LayoutParams params) {
+        // overflowView始终保持在最后
+        if (mOverflowView != null) {
+            int flowChildCount = getFlowChildCount();
+            if (index < 0 || index > flowChildCount) {
+                index = flowChildCount;
+            }
+        }
+        super.addView(child, index, params);
+    }
+
+    /**
+     * setAdapter 设置数据适配器,会先移除当前所有的childView
+     */
+    public void setAdapter(FlowAdapter<?> adapter) {
+        if (mAdapter != null) {
+            mAdapter.detach();
+        }
+        removeViews(0, getFlowChildCount());
+        mSelection.clear();
+        mAdapter = adapter;
+        if (adapter != null) {
+            adapter.attach(this);
+        }
+    }
+
+    public FlowAdapter<?> getAdapter() {
+        return mAdapter;
+    }
+
+    /**
+     * setFilter 按前缀过滤标签,只切换标签的显示状态,见FlowAdapter#setFilter
+     */
+    public void setFilter(CharSequence prefix) {
+        if (mAdapter != null) {
+            mAdapter.setFilter(prefix);
+        }
+    }
+
+    /**
+     * setChoiceMode 设置选择模式CHOICE_MODE_NONE,CHOICE_MODE_SINGLE或CHOICE_MODE_MULTIPLE,切换时清空已选中的标签
+     */
+    public void setChoiceMode(int choiceMode) {
+        if (choiceMode == mChoiceMode) {
+            return;
+        }
+        clearSelection();
+        mChoiceMode = choiceMode;
+    }
+
+    public int getChoiceMode() {
+        return mChoiceMode;
+    }
+
+    public void setOnSelectionChangedListener(OnSelectionChangedListener onSelectionChangedListener) {
+        mOnSelectionChangedListener = onSelectionChangedListener;
+    }
+
+    public boolean isItemSelected(int position) {
+        return mSelection.get(position);
+    }
+
+    public int getSelectedCount() {
+        return mSelection.cardinality();
+    }
+
+    /**
+     * getSelectedPositions 返回选中状态的拷贝
+     */
+    public BitSet getSelectedPositions() {
+        return (BitSet) mSelection.clone();
+    }
+
+    /**
+     * setItemSelected 修改一个标签的选中状态,单选模式下会取消之前选中的标签
+     */
+    public void setItemSelected(int position, boolean selected) {
+        if (mChoiceMode == CHOICE_MODE_NONE || mSelection.get(position) == selected) {
+            return;
+        }
+        int from = position;
+        int to = position + 1;
+        if (selected && mChoiceMode == CHOICE_MODE_SINGLE) {
+            int old = mSelection.nextSetBit(0);
+            if (old >= 0) {
+                applySelected(old, false);
+                from = Math.min(from, old);
+                to = Math.max(to, old + 1);
+            }
+        }
+        applySelected(position, selected);
+        dispatchSelectionChanged(from, to);
+    }
+
+    /**
+     * selectAll 全选,只在多选模式下有效,只刷新原来没有选中的标签,被过滤掉(GONE)的标签不选中
+     */
+    public void selectAll() {
+        if (mChoiceMode != CHOICE_MODE_MULTIPLE) {
+            return;
+        }
+        int count = getFlowChildCount();
+        int first = -1;
+        int last = -1;
+        for (int i = mSelection.nextClearBit(0); i < count; i = mSelection.nextClearBit(i + 1)) {
+            View child = getChildAt(i);
+            if (child.getVisibility() == GONE) {
+                continue;
+            }
+            child.setSelected(true);
+            mSelection.set(i);
+            if (first < 0) {
+                first = i;
+            }
+            last = i;
+        }
+        if (first >= 0) {
+            dispatchSelectionChanged(first, last + 1);
+        }
+    }
+
+    /**
+     * clearSelection 取消全部选中,只刷新原来选中的标签
+     */
+    public void clearSelection() {
+        int first = mSelection.nextSetBit(0);
+        if (first < 0) {
+            return;
+        }
+        int count = getFlowChildCount();
+        int last = first;
+        for (int i = first; i >= 0; i = mSelection.nextSetBit(i + 1)) {
+            if (i < count) {
+                getChildAt(i).setSelected(false);
+            }
+            last = i;
+        }
+        mSelection.clear();
+        dispatchSelectionChanged(first, last + 1);
+    }
+
+    /**
+     * invertSelection 反选,只在多选模式下有效,被过滤掉(GONE)的标签保持原来的状态
+     */
+    public void invertSelection() {
+        if (mChoiceMode != CHOICE_MODE_MULTIPLE) {
+            return;
+        }
+        int count = getFlowChildCount();
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i < count; i++) {
+            View child = getChildAt(i);
+            if (child.getVisibility() == GONE) {
+                continue;
+            }
+            boolean selected = !mSelection.get(i);
+            child.setSelected(selected);
+            mSelection.set(i, selected);
+            if (first < 0) {
+                first = i;
+            }
+            last = i;
+        }
+        if (first >= 0) {
+            dispatchSelectionChanged(first, last + 1);
+        }
+    }
+
+    /**
+     * clearChipSelected 标签换成了另外一项数据时取消它的选中状态,选中状态不能跟着childView传给新的数据
+     */
+    void clearChipSelected(int position) {
+        if (mSelection.get(position)) {
+            applySelected(position, false);
+            dispatchSelectionChanged(position, position + 1);
+        }
+    }
+
+    private void applySelected(int position, boolean selected) {
+        mSelection.set(position, selected);
+        if (position < getFlowChildCount()) {
+            getChildAt(position).setSelected(selected);
+        }
+    }
+
+    private void dispatchSelectionChanged(int from, int to) {
+        if (mOnSelectionChangedListener != null) {
+            mOnSelectionChangedListener.onSelectionChanged(from, to);
+        }
+    }
+
+    /**
+     * shiftSelection 插入或移除标签后原地移动后面的选中状态,delta为正表示插入,为负表示从position开始移除-delta个
+     */
+    private void shiftSelection(int position, int delta) {
+        int length = mSelection.length();
+        if (position >= length) {
+            return;
+        }
+        if (delta < 0) {
+            // 移除: 先清除被移除的部分,再从前往后把后面选中的位置往前移,目标位置都已经处理过
+            mSelection.clear(position, Math.min(position - delta, length));
+            for (int i = mSelection.nextSetBit(position - delta); i >= 0; i = mSelection.nextSetBit(i + 1)) {
+                mSelection.clear(i);
+                mSelection.set(i + delta);
+            }
+        } else if (delta > 0) {
+            // 插入: 从后往前移,避免覆盖还没有移动的位置.BitSet.previousSetBit需要API 19,这里逐位读取
+            for (int i = length - 1; i >= position; i--) {
+                if (mSelection.get(i)) {
+                    mSelection.clear(i);
+                    mSelection.set(i + delta);
                 }
-            });
+            }
+        }
+    }
+
+    /**
+     * setChangeAnimationEnabled 开启插入和移除标签的动画
+     *
+     * 移动的标签从原来的位置滑到新的座位,新增的标签淡入,移除的标签在原处淡出.
+     */
+    public void setChangeAnimationEnabled(boolean changeAnimationEnabled) {
+        mChangeAnimationEnabled = changeAnimationEnabled;
+    }
+
+    public boolean isChangeAnimationEnabled() {
+        return mChangeAnimationEnabled;
+    }
+
+    /**
+     * setDragEnabled 开启长按拖动排序,只有开启时标签才可以长按
+     */
+    public void setDragEnabled(boolean dragEnabled) {
+        if (dragEnabled == mDragEnabled) {
+            return;
+        }
+        if (!dragEnabled && mDragView != null) {
+            finishDrag(false);
+        }
+        mDragEnabled = dragEnabled;
+        int count = getFlowChildCount();
+        for (int i = 0; i < count; i++) {
+            View child = getChildAt(i);
+            LayoutParams params = child.getLayoutParams();
+            if (params instanceof MyLayoutParams) {
+                setChipDraggable(child, (MyLayoutParams) params, dragEnabled);
+            }
+        }
+    }
+
+    public boolean isDragEnabled() {
+        return mDragEnabled;
+    }
+
+    public void setOnItemMovedListener(OnItemMovedListener onItemMovedListener) {
+        mOnItemMovedListener = onItemMovedListener;
+    }
+
+    /**
+     * 所有标签共用的长按监听,开启拖动排序时从这里开始拖动
+     */
+    private final OnLongClickListener mChipLongClickListener = new OnLongClickListener() {
+        @Override
+        public boolean onLongClick(View v) {
+            int position = indexOfChildFast(v);
+            if (!mDragEnabled || mDragView != null || position < 0 || position >= mPackedCount) {
+                return false;
+            }
+            mDragView = v;
+            mDragFrom = position;
+            mDragTarget = position;
+            v.animate().scaleX(DRAG_SCALE).scaleY(DRAG_SCALE).setDuration(DRAG_SHIFT_DURATION);
+            // 拖动的标签画在最上面
+            setChildrenDrawingOrderEnabled(true);
+            invalidate();
+            if (getParent() != null) {
+                getParent().requestDisallowInterceptTouchEvent(true);
+            }
+            return true;
+        }
+    };
+
+    /**
+     * setChipDraggable 开启拖动时给标签设置长按监听,关闭时恢复为不可长按,只处理FlowLayout自己设置过监听的标签
+     */
+    private void setChipDraggable(View chip, MyLayoutParams lp, boolean draggable) {
+        if (lp.draggable == draggable) {
+            return;
+        }
+        lp.draggable = draggable;
+        if (draggable) {
+            chip.setOnLongClickListener(mChipLongClickListener);
+        } else {
+            chip.setOnLongClickListener(null);
+            chip.setLongClickable(false);
         }
     }
 
     @Override
-    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        super.onMeasure(widthMeasureSpec,heightMeasureSpec);
+    protected int getChildDrawingOrder(int childCount, int i) {
+        int drag = mDragView == null ? -1 : mDragFrom;
+        if (drag < 0) {
+            return i;
+        }
+        if (i == childCount - 1) {
+            return drag;
+        }
+        return i >= drag ? i + 1 : i;
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent ev) {
+        if (ev.getActionMasked() == MotionEvent.ACTION_DOWN) {
+            mLastDownX = ev.getX();
+            mLastDownY = ev.getY();
+        }
+        if (mDragView == null) {
+            return false;
+        }
+        // 长按之后的第一个事件在这里处理,标签收到CANCEL,之后的事件都交给onTouchEvent
+        handleDragEvent(ev);
+        return true;
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent ev) {
+        if (mDragView == null) {
+            return super.onTouchEvent(ev);
+        }
+        handleDragEvent(ev);
+        return true;
+    }
+
+    private void handleDragEvent(MotionEvent ev) {
+        switch (ev.getActionMasked()) {
+            case MotionEvent.ACTION_MOVE:
+                updateDrag(ev.getX(), ev.getY());
+                break;
+            case MotionEvent.ACTION_UP:
+                finishDrag(true);
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                finishDrag(false);
+                break;
+            default:
+                break;
+        }
+    }
 
-        resetAll();
-        ViewTag tag = null;
+    /**
+     * updateDrag 拖动的标签跟随手指,目标位置变化时只让两次目标位置之间的标签移动到相邻的座位
+     */
+    private void updateDrag(float x, float y) {
+        View dragView = mDragView;
+        dragView.setTranslationX(x - mLastDownX);
+        dragView.setTranslationY(y - mLastDownY);
+
+        int target = findChildPositionUnder(x, y);
+        int oldTarget = mDragTarget;
+        if (target < 0 || target == oldTarget) {
+            return;
+        }
+        mDragTarget = target;
+        int from = mDragFrom;
+        int low = Math.min(from, Math.min(oldTarget, target));
+        int high = Math.max(from, Math.max(oldTarget, target));
+        for (int i = low; i <= high; i++) {
+            if (i == from || mChildGone[i]) {
+                continue;
+            }
+            int seat = getDragSeat(i, from, target);
+            if (seat == getDragSeat(i, from, oldTarget)) {
+                continue;
+            }
+            View child = getChildAt(i);
+            View seatView = getChildAt(seat);
+            child.animate()
+                    .translationX(seatView.getLeft() - child.getLeft())
+                    .translationY(seatView.getTop() - child.getTop())
+                    .setDuration(DRAG_SHIFT_DURATION);
+        }
+    }
+
+    /**
+     * getDragSeat 拖动到target时position处的标签应该占用的座位,即前一个或后一个可见标签的位置
+     */
+    private int getDragSeat(int position, int from, int target) {
+        int seat = position;
+        if (from < target && position > from && position <= target) {
+            do {
+                seat--;
+            } while (mChildGone[seat]);
+        } else if (target < from && position >= target && position < from) {
+            do {
+                seat++;
+            } while (mChildGone[seat]);
+        }
+        return seat;
+    }
+
+    private void finishDrag(boolean commit) {
+        View dragView = mDragView;
+        int from = mDragFrom;
+        int target = mDragTarget;
+        int to = commit ? target : from;
+        mDragView = null;
+        mDragFrom = -1;
+        mDragTarget = -1;
+        setChildrenDrawingOrderEnabled(false);
+
+        // 让过位置的标签回到原处,提交移动时重新排列后它们正好在让出的座位上.
+        // 开启动画并且提交了移动时保留translation,布局时从当前看到的位置接着滑到座位上;取消拖动时不会重新布局,开启动画就滑回原处
+        boolean keepTranslation = mChangeAnimationEnabled && from != to;
+        if (!keepTranslation) {
+            int low = Math.min(from, target);
+            int high = Math.max(from, target);
+            for (int i = low; i <= high; i++) {
+                View child = getChildAt(i);
+                if (child == dragView || (child.getTranslationX() == 0 && child.getTranslationY() == 0)) {
+                    continue;
+                }
+                child.animate().cancel();
+                if (mChangeAnimationEnabled) {
+                    child.animate().translationX(0).translationY(0).setDuration(DRAG_SHIFT_DURATION);
+                } else {
+                    child.setTranslationX(0);
+                    child.setTranslationY(0);
+                }
+            }
+        }
+        dragView.animate().cancel();
+        dragView.animate().scaleX(1).scaleY(1).setDuration(DRAG_SHIFT_DURATION);
+        if (from == to) {
+            dragView.animate().translationX(0).translationY(0);
+            return;
+        }
+        mSettleView = dragView;
+        mSettleX = dragView.getLeft() + dragView.getTranslationX();
+        mSettleY = dragView.getTop() + dragView.getTranslationY();
+        moveChip(from, to);
+    }
+
+    /**
+     * moveChip 把from处的标签移动到to,不经过removeView和addView,只从受影响的那一排开始重新排列
+     */
+    private void moveChip(int from, int to) {
+        View child = getChildAt(from);
+        attachChip(child, to, detachChip(from));
+        if (mAdapter != null) {
+            mAdapter.moveItem(from, to);
+        }
+        if (mOnItemMovedListener != null) {
+            mOnItemMovedListener.onItemMoved(from, to);
+        }
+    }
+
+    /**
+     * detachChip 暂时把position处的标签从数组中取出,之后必须用attachChip放回
+     *
+     * @return 标签原来的选中状态
+     */
+    boolean detachChip(int position) {
+        boolean selected = mSelection.get(position);
+        shiftSelection(position, -1);
+        markDirty(position);
+        detachViewFromParent(position);
+        return selected;
+    }
+
+    /**
+     * attachChip 把detachChip取出的标签放回到position,不经过addView,只从受影响的那一排开始重新排列
+     */
+    void attachChip(View chip, int position, boolean selected) {
+        shiftSelection(position, 1);
+        mSelection.set(position, selected);
+        attachViewToParent(chip, position, chip.getLayoutParams());
+        markDirty(position);
+        mChangePending = true;
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * createChip 按照FlowLayout的文字属性创建一个标签
+     */
+    public TextView createChip() {
+        TextView tv = new TextView(getContext());
+        tv.setTextSize(TypedValue.COMPLEX_UNIT_PX, mTextSize);
+        tv.setTextColor(mTextColor);
+        tv.setGravity(Gravity.CENTER);
+        tv.setPadding(mTextPaddingH, mTextPaddingV, mTextPaddingH, mTextPaddingV);
+        tv.setBackgroundResource(mTvBackground);
+        tv.setClickable(true);
+        return tv;
+    }
+
+    void addChip(View chip, int position) {
+        MyLayoutParams lp;
+        LayoutParams params = chip.getLayoutParams();
+        if (params instanceof MyLayoutParams) {
+            lp = (MyLayoutParams) params;
+        } else {
+            lp = (MyLayoutParams) generateDefaultLayoutParams();
+        }
+        // 预先记下position,onViewAdded中不需要再遍历查找
+        lp.position = position;
+        // 回收的标签清除之前记录的点击监听
+        chip.setTag(R.id.flow_item_click_listener, null);
+        chip.setOnClickListener(mChipClickListener);
+        // 回收的标签可能是在开启拖动时设置过长按监听的
+        setChipDraggable(chip, lp, mDragEnabled);
+        // 新插入的标签没有选中,回收的标签也要清除之前的选中状态
+        shiftSelection(position, 1);
+        chip.setSelected(false);
+        mChangePending = true;
+        addView(chip, position, lp);
+    }
+
+    void removeChips(int position, int count) {
+        shiftSelection(position, -count);
+        mChangePending = true;
+        if (!mChangeAnimationEnabled) {
+            removeViews(position, count);
+            return;
+        }
+        // 移除之后继续绘制,直到淡出结束
+        List<View> disappearing = mDisappearingChips;
+        for (int i = position; i < position + count; i++) {
+            View child = getChildAt(i);
+            if (child.getVisibility() == VISIBLE && child.getWidth() > 0) {
+                startViewTransition(child);
+                disappearing.add(child);
+            }
+        }
+        removeViews(position, count);
+        for (int i = 0; i < disappearing.size(); i++) {
+            animateDisappear(disappearing.get(i));
+        }
+        disappearing.clear();
+    }
+
+    private void animateDisappear(final View child) {
+        child.animate().alpha(0).setDuration(CHANGE_DURATION).setListener(new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                child.animate().setListener(null);
+                child.setAlpha(1);
+                endViewTransition(child);
+            }
+        });
+    }
+
+    /**
+     * animateChange 插入,移除或移动标签后重新layout之前调用,把childView放回原来的位置再滑到新的座位,从未布局过的childView淡入
+     */
+    private void animateChange(View child, int left, int top) {
+        if (child.getWidth() == 0 && child.getHeight() == 0) {
+            child.setAlpha(0);
+            child.animate().alpha(1).setDuration(CHANGE_DURATION).setListener(null);
+            return;
+        }
+        // 动画还没结束时从当前看到的位置继续
+        float dx = child.getLeft() + child.getTranslationX() - left;
+        float dy = child.getTop() + child.getTranslationY() - top;
+        if (dx == 0 && dy == 0) {
+            if (child.getTranslationX() != 0 || child.getTranslationY() != 0) {
+                // 已经在新的座位上,只是translation还没有归零
+                child.animate().cancel();
+                child.setTranslationX(0);
+                child.setTranslationY(0);
+            }
+            return;
+        }
+        child.setTranslationX(dx);
+        child.setTranslationY(dy);
+        child.animate().translationX(0).translationY(0).setDuration(CHANGE_DURATION).setListener(null);
+    }
+
+    /**
+     * 所有标签共用的点击分发,通过position找到对应的数据
+     */
+    private final OnClickListener mChipClickListener = new OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            int position = indexOfChildFast(v);
+            if (mChoiceMode != CHOICE_MODE_NONE && position >= 0) {
+                // 单选模式下点击已选中的标签保持选中
+                setItemSelected(position, mChoiceMode == CHOICE_MODE_SINGLE || !mSelection.get(position));
+            }
+            if (mAdapter != null) {
+                mAdapter.performItemClick(position);
+            }
+        }
+    };
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         // widthSize 和 heightSize包含自身的padding
         int widthSize = resolveSize(0, widthMeasureSpec);
 
@@ -120,92 +924,447 @@ public class FlowLayout  extends ViewGroup {
         int paddingRight = getPaddingRight();
         int paddingBottom = getPaddingBottom();
 
-        int currentUsed = 0;
+        int hSpace = (int) mHorizontalSpacing;
+        int vSpace = (int) mVerticalSpacing;
+
+        int childCount = getFlowChildCount();
+        ensureCapacity(childCount);
+
+        // 测量规格变化时所有childView都要重新测量,padding变化时只需重新排列
+        boolean specChanged = widthMeasureSpec != mLastWidthSpec || heightMeasureSpec != mLastHeightSpec;
+        int from = Math.min(Math.min(mDirtyFrom, mPackedCount), childCount);
+        if (specChanged || paddingLeft != mLastPaddingLeft || paddingTop != mLastPaddingTop || paddingRight != mLastPaddingRight) {
+            from = 0;
+        }
+        // 找到第一个请求过重新布局或者显示状态发生变化的childView,它之前的childView保持上一次的测量结果和座位
+        for (int i = 0; i < from; i++) {
+            View child = getChildAt(i);
+            boolean gone = child.getVisibility() == GONE;
+            if (gone != mChildGone[i] || (!gone && child.isLayoutRequested())) {
+                from = i;
+                break;
+            }
+        }
 
         // 这里把左边一个也减去为了更好计算
-        int canUsed = (int) (widthSize - paddingLeft - paddingRight - mHorizontalSpacing);
-        // 每行的高度即每个childView的高度
-        int lineHeight = -1;
+        int canUsed = widthSize - paddingLeft - paddingRight - hSpace;
+        // 当前行已经占用的宽度(每个childView的宽度加上其左边的间距)
+        int currentUsed = 0;
+        // 当前行已经放入的childView个数
+        int column = 0;
 
-        int childCount = getChildCount();
-        for (int i = 0;i < childCount; i++) {
+        // 从受影响的那一排的第一个childView开始继续排列
+        int row = 0;
+        int startRow;
+        int start = 0;
+        // 末尾追加前最后一排的高度,-1表示不是追加
+        int tailHeight = -1;
+        if (from > 0 && mRowCount > 0) {
+            if (from >= mPackedCount && mHiddenCount == 0) {
+                // 只是在末尾追加,接着最后一排剩余的宽度继续排列,之前的childView不用重新排列
+                start = mPackedCount;
+                row = mRowCount - 1;
+                currentUsed = mTailUsed;
+                column = mTailColumn;
+                tailHeight = mRowHeight[row];
+            } else {
+                row = mChildRow[Math.min(from, mPackedCount - 1)];
+                start = row == 0 ? 0 : mRowStart[row];
+            }
+        }
+        startRow = row;
+
+        // 快照只在第一次测量时使用一次
+        FlowSnapshot snapshot = mPendingSnapshot;
+        if (snapshot != null) {
+            mPendingSnapshot = null;
+            int contentHash = mAdapter != null ? mAdapter.getItems().hashCode() : 0;
+            if (!snapshot.matches(widthSize - paddingLeft - paddingRight, hSpace, vSpace,
+                    paddingLeft, paddingTop, paddingRight, paddingBottom,
+                    mTextSize, getResources().getDisplayMetrics().density, contentHash)) {
+                snapshot = null;
+            }
+        }
+
+        // 超出最大行数的第一个childView,之后的都不再测量
+        int packedCount = childCount;
+        // 一次遍历即完成换行计算,把每个childView的座位(第几排,左上角坐标)直接记录到数组中,onLayout只需按下标读取即可.
+        for (int i = start; i < childCount; i++) {
             View child = getChildAt(i);
-            if (child.getVisibility() != GONE) {
+            mChildRow[i] = row;
+            mChildGone[i] = child.getVisibility() == GONE;
+            LayoutParams params = child.getLayoutParams();
+            if (params instanceof MyLayoutParams) {
+                ((MyLayoutParams) params).position = i;
+            }
+            if (mChildGone[i]) {
+                continue;
+            }
+            // 没有请求过重新布局的childView直接沿用上一次的测量结果
+            if ((specChanged || child.isLayoutRequested())
+                    && !measureFromSnapshot(snapshot, child, i)
+                    && !measurePrecomputed(child, i, widthSize - paddingLeft - paddingRight)) {
                 // 注: 这里我看到很多自定义控件不仅没有使用这么方便的方法而且【多余的把整个方法贴到这里】,且没有把child的margin去掉.
                 measureChildWithMargins(child, widthMeasureSpec, 0, heightMeasureSpec, 0);
+            }
 
-                int childWidth = child.getMeasuredWidth();
-                int childHeight = child.getMeasuredHeight();
+            int childWidth = child.getMeasuredWidth();
+            int childHeight = child.getMeasuredHeight();
 
-                lineHeight = childHeight;
+            // 当前行放不下则换行,但每行至少放一个,避免超宽的childView前面多出一个空行
+            if (column > 0 && currentUsed + childWidth + hSpace > canUsed) {
+                if (mMaxLines > 0 && row + 1 >= mMaxLines) {
+                    packedCount = i;
+                    break;
+                }
+                currentUsed = 0;
+                column = 0;
+                row++;
+            }
+            if (column == 0) {
+                ensureRowCapacity(row + 1);
+                mRowStart[row] = i;
+                mRowHeight[row] = 0;
+            }
+            mChildRow[i] = row;
+            mChildLeft[i] = paddingLeft + hSpace + currentUsed;
+            mRowHeight[row] = Math.max(mRowHeight[row], childHeight);
+
+            currentUsed += childWidth + hSpace;
+            column++;
+        }
+
+        int hiddenCount = 0;
+        for (int i = packedCount; i < childCount; i++) {
+            if (getChildAt(i).getVisibility() != GONE) {
+                hiddenCount++;
+            }
+        }
 
-                currentUsed += childWidth + mHorizontalSpacing;
-                if (currentUsed > canUsed) {
-                    currentUsed = (int) (childWidth + mHorizontalSpacing);
-                    x_index = 1;
-                    y_index +=1;
-                }else{
-                    x_index +=1;
+        // 有折叠的标签时把overflowView放在最后一排末尾,放不下就再从末尾折叠几个
+        mOverflowShown = false;
+        View overflow = mOverflowView;
+        if (overflow != null && hiddenCount > 0) {
+            while (true) {
+                if (hiddenCount != mReportedHiddenCount) {
+                    mReportedHiddenCount = hiddenCount;
+                    if (mOnOverflowListener != null) {
+                        mOnOverflowListener.onOverflow(overflow, hiddenCount);
+                    }
+                }
+                measureChildWithMargins(overflow, widthMeasureSpec, 0, heightMeasureSpec, 0);
+                if (column == 0 || currentUsed + overflow.getMeasuredWidth() + hSpace <= canUsed) {
+                    break;
+                }
+                // 折叠最后一排的最后一个标签
+                int last = packedCount - 1;
+                while (mChildGone[last]) {
+                    last--;
+                }
+                currentUsed -= getChildAt(last).getMeasuredWidth() + hSpace;
+                column--;
+                packedCount = last;
+                hiddenCount++;
+            }
+            if (column == 0) {
+                ensureRowCapacity(row + 1);
+                mRowStart[row] = packedCount;
+            }
+            // 折叠后重新计算最后一排的高度
+            mRowHeight[row] = overflow.getMeasuredHeight();
+            for (int i = mRowStart[row]; i < packedCount; i++) {
+                if (!mChildGone[i]) {
+                    mRowHeight[row] = Math.max(mRowHeight[row], getChildAt(i).getMeasuredHeight());
                 }
-                tag = new ViewTag();
-                tag.position = i;
-                tag.x_index = x_index;
-                tag.y_index = y_index;
-                viewTags.add(tag);
             }
+            mOverflowLeft = paddingLeft + hSpace + currentUsed;
+            mOverflowShown = true;
+            column++;
         }
+
+        int lineCount = column > 0 ? row + 1 : row;
+
+        // 从重新排列的那一排开始更新每一排的顶部坐标
+        ensureRowCapacity(lineCount);
+        mRowTop[0] = paddingTop + vSpace;
+        for (int r = Math.min(startRow, lineCount); r < lineCount; r++) {
+            mRowTop[r + 1] = mRowTop[r] + mRowHeight[r] + vSpace;
+        }
+
+        // 追加的childView让最后一排变高时,这一排原有的childView也要重新垂直居中
+        if (tailHeight >= 0 && startRow < lineCount && mRowHeight[startRow] != tailHeight) {
+            start = mRowStart[startRow];
+        }
+
+        mRowCount = lineCount;
+        mTailUsed = currentUsed;
+        mTailColumn = column;
+        mHiddenCount = hiddenCount;
+        mPackedCount = packedCount;
+        mDirtyFrom = Integer.MAX_VALUE;
+        mLayoutFrom = Math.min(mLayoutFrom, Math.min(start, packedCount));
+        mLastWidthSpec = widthMeasureSpec;
+        mLastHeightSpec = heightMeasureSpec;
+        mLastPaddingLeft = paddingLeft;
+        mLastPaddingTop = paddingTop;
+        mLastPaddingRight = paddingRight;
+
         // 计算FlowLayout的高度
-        float wannaHeight = paddingTop + paddingBottom + lineHeight * y_index + mVerticalSpacing * (y_index + 1);
-        setMeasuredDimension(widthSize, (int) wannaHeight);
+        int wannaHeight = mRowTop[lineCount] + paddingBottom;
+        setMeasuredDimension(widthSize, wannaHeight);
+    }
+
+    /**
+     * measureFromSnapshot 使用快照中的尺寸以EXACTLY规格测量
+     */
+    private boolean measureFromSnapshot(FlowSnapshot snapshot, View child, int position) {
+        if (snapshot == null || position >= snapshot.size() || snapshot.getWidth(position) == 0) {
+            return false;
+        }
+        child.measure(MeasureSpec.makeMeasureSpec(snapshot.getWidth(position), MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(snapshot.getHeight(position), MeasureSpec.EXACTLY));
+        return true;
+    }
+
+    /**
+     * measurePrecomputed 使用后台预先计算好的尺寸直接以EXACTLY规格测量标签,省去TextView计算wrap_content文字宽度的过程
+     *
+     * 只有文字与预先计算时一致且不超过可用宽度的TextView才会使用,否则返回false走正常的测量.
+     */
+    private boolean measurePrecomputed(View child, int position, int maxWidth) {
+        FlowTextMeasurer.Result sizes = mPrecomputedSizes;
+        if (sizes == null || position >= sizes.size() || !(child instanceof TextView)) {
+            return false;
+        }
+        if (!TextUtils.equals(((TextView) child).getText(), sizes.getText(position))) {
+            return false;
+        }
+        int width = sizes.getWidth(position);
+        if (width > maxWidth) {
+            return false;
+        }
+        child.measure(MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(sizes.getHeight(position), MeasureSpec.EXACTLY));
+        return true;
     }
 
     /**
-     * resetAll 重置标志参数
+     * ensureCapacity 保证座位数组足够容纳所有childView
      *
-     * 由于onMeasure和onLayout可能调用多次,使用这种逻辑方式需要注意重置,否则可能和理想效果差距很大.
+     * 数组只增不减,onMeasure和onLayout可能调用多次,复用同一组数组避免每次测量都创建对象.
      */
-    private void resetAll() {
-        viewTags.clear();
-        x_index = 0;
-        y_index = 1;
+    private void ensureCapacity(int childCount) {
+        if (mChildLeft.length >= childCount) {
+            return;
+        }
+        int capacity = Math.max(childCount, mChildLeft.length + (mChildLeft.length >> 1));
+        mChildLeft = Arrays.copyOf(mChildLeft, capacity);
+        mChildRow = Arrays.copyOf(mChildRow, capacity);
+        mChildGone = Arrays.copyOf(mChildGone, capacity);
+    }
+
+    private void ensureRowCapacity(int rowCount) {
+        if (mRowStart.length >= rowCount) {
+            return;
+        }
+        int capacity = Math.max(rowCount, mRowStart.length << 1);
+        mRowStart = Arrays.copyOf(mRowStart, capacity);
+        mRowHeight = Arrays.copyOf(mRowHeight, capacity);
+        mRowTop = Arrays.copyOf(mRowTop, capacity + 1);
+    }
+
+    /**
+     * findChildPositionUnder 找到坐标(相对于FlowLayout)下的childView
+     *
+     * 先按每一排的顶部坐标二分查找所在的排,再只在这一排中查找,不需要遍历所有的childView.
+     *
+     * @return childView的position,没有则返回-1
+     */
+    public int findChildPositionUnder(float x, float y) {
+        int rowCount = mRowCount;
+        if (rowCount == 0 || y < mRowTop[0]) {
+            return -1;
+        }
+        int low = 0;
+        int high = rowCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (mRowTop[mid] <= y) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        int row = low;
+        if (y >= mRowTop[row] + mRowHeight[row]) {
+            return -1;
+        }
+        int end = Math.min(row + 1 < rowCount ? mRowStart[row + 1] : mPackedCount, getFlowChildCount());
+        for (int i = mRowStart[row]; i < end; i++) {
+            if (mChildGone[i]) {
+                continue;
+            }
+            if (x < mChildLeft[i]) {
+                return -1;
+            }
+            View child = getChildAt(i);
+            if (x < mChildLeft[i] + child.getMeasuredWidth()) {
+                int childTop = mRowTop[row] + (mRowHeight[row] - child.getMeasuredHeight()) / 2;
+                return y >= childTop && y < childTop + child.getMeasuredHeight() ? i : -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * findChildUnder 找到坐标(相对于FlowLayout)下的childView,没有则返回null
+     */
+    public View findChildUnder(float x, float y) {
+        int position = findChildPositionUnder(x, y);
+        return position == -1 ? null : getChildAt(position);
+    }
+
+    /**
+     * markDirty 标记从position开始的childView需要重新排列
+     */
+    private void markDirty(int position) {
+        mDirtyFrom = Math.min(mDirtyFrom, position);
+    }
+
+    /**
+     * 添加或移除childView时只需找到它的position: 排列时记录在MyLayoutParams中的position仍然有效时直接使用,
+     * 追加到末尾时就是最后一个,都不满足时才遍历查找.移除时必须在childView离开数组之前查找.
+     */
+    private int indexOfChildFast(View child) {
+        LayoutParams params = child.getLayoutParams();
+        if (params instanceof MyLayoutParams) {
+            int position = ((MyLayoutParams) params).position;
+            if (position >= 0 && position < getChildCount() && getChildAt(position) == child) {
+                return position;
+            }
+        }
+        int last = getChildCount() - 1;
+        if (last >= 0 && getChildAt(last) == child) {
+            return last;
+        }
+        return indexOfChild(child);
     }
 
     @Override
-    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+    public void onViewAdded(View child) {
+        super.onViewAdded(child);
+        if (mDirtyFrom > 0 && child != mOverflowView) {
+            markDirty(indexOfChildFast(child));
+        }
+    }
 
-        float childCount = getChildCount();
-        int paddingTop = getPaddingTop();
-        int paddingLeft = getPaddingLeft();
+    /**
+     * markRemoved 在移除childView之前调用,onViewRemoved回调时childView已经不在数组中,拿不到原来的position
+     */
+    private void markRemoved(int position) {
+        if (position >= 0 && position < getFlowChildCount()) {
+            markDirty(position);
+        }
+    }
+
+    @Override
+    public void removeView(View view) {
+        markRemoved(indexOfChildFast(view));
+        super.removeView(view);
+    }
+
+    @Override
+    public void removeViewInLayout(View view) {
+        markRemoved(indexOfChildFast(view));
+        super.removeViewInLayout(view);
+    }
+
+    @Override
+    public void removeViewAt(int index) {
+        markRemoved(index);
+        super.removeViewAt(index);
+    }
+
+    @Override
+    public void removeViews(int start, int count) {
+        markRemoved(start);
+        super.removeViews(start, count);
+    }
+
+    @Override
+    public void removeViewsInLayout(int start, int count) {
+        markRemoved(start);
+        super.removeViewsInLayout(start, count);
+    }
+
+    @Override
+    public void removeAllViewsInLayout() {
+        markDirty(0);
+        super.removeAllViewsInLayout();
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        int childCount = getFlowChildCount();
+        int packedCount = Math.min(mPackedCount, childCount);
+        int from = Math.max(0, mLayoutFrom);
+        boolean animate = mChangeAnimationEnabled && mChangePending;
+        mChangePending = false;
 
         // 这里有点小瑕疵,虽然上面计算了childView的margin,但是这里并没有根据childView的margin布局,为了逻辑简单,暂时就不支持childView的margin属性了.
-        for (int i = 0; i < childCount; i++){
+        // 座位没有变化的childView无需再次layout
+        for (int i = from; i < packedCount; i++) {
             View childView = getChildAt(i);
 
             if (childView.getVisibility() != GONE) {
-                MarginLayoutParams lp = (MarginLayoutParams) childView.getLayoutParams();
-                int childWidth = childView.getMeasuredWidth();
-                int childHeight = childView.getMeasuredHeight();
-                ViewTag tag = viewTags.get(i);
-
-                int childLeft = (int) (paddingLeft + mHorizontalSpacing);
-                int childTop = (int) ( paddingTop + mVerticalSpacing + (childHeight + mVerticalSpacing) * (tag.y_index - 1) );
-                for(int j = 0;j < tag.position;j++) {
-                    ViewTag temp = viewTags.get(j);
-                    // 找到在当前view之前且在同一个Y坐标的所有子View
-                    if (tag.y_index == temp.y_index) {
-                        View beforeView = getChildAt(temp.position);
-                        int beforeViewWidth = beforeView.getMeasuredWidth();
-                        childLeft += beforeViewWidth + mHorizontalSpacing;
-                    }
+                // 每个childView的左边坐标和所在的排已经在onMeasure中算好,在这一排中垂直居中
+                int row = mChildRow[i];
+                int childLeft = mChildLeft[i];
+                int childTop = mRowTop[row] + (mRowHeight[row] - childView.getMeasuredHeight()) / 2;
+                if (animate) {
+                    animateChange(childView, childLeft, childTop);
                 }
+                childView.layout(childLeft, childTop, childLeft + childView.getMeasuredWidth(), childTop + childView.getMeasuredHeight());
+            }
+        }
+        // 折叠的childView不布局,之前显示过的移出可见区域
+        for (int i = Math.max(from, packedCount); i < childCount; i++) {
+            hideChild(getChildAt(i));
+        }
 
-                // 计算每个childView的左顶点坐标
-                childView.layout(childLeft,childTop,childLeft + childWidth,childTop + childHeight);
+        View overflow = mOverflowView;
+        if (overflow != null) {
+            if (mOverflowShown) {
+                int row = mRowCount - 1;
+                int overflowTop = mRowTop[row] + (mRowHeight[row] - overflow.getMeasuredHeight()) / 2;
+                overflow.layout(mOverflowLeft, overflowTop, mOverflowLeft + overflow.getMeasuredWidth(), overflowTop + overflow.getMeasuredHeight());
+            } else {
+                hideChild(overflow);
             }
         }
+        mLayoutFrom = Integer.MAX_VALUE;
+
+        View settleView = mSettleView;
+        if (settleView != null) {
+            mSettleView = null;
+            settleView.setTranslationX(mSettleX - settleView.getLeft());
+            settleView.setTranslationY(mSettleY - settleView.getTop());
+            settleView.animate().translationX(0).translationY(0).setDuration(DRAG_SHIFT_DURATION);
+        }
+    }
+
+    private void hideChild(View child) {
+        // 从未布局过的childView本来就是空的,不需要layout,以免清除它等待测量的标记
+        if (child.getRight() != child.getLeft() || child.getBottom() != child.getTop()) {
+            child.layout(0, 0, 0, 0);
+        }
     }
 
     public static class MyLayoutParams extends MarginLayoutParams {
+        // 最近一次排列时childView的position
+        int position = -1;
+        // 是否设置了拖动排序的长按监听
+        boolean draggable;
 
         public MyLayoutParams(Context c, AttributeSet attrs) {
             super(c, attrs);
@@ -218,6 +1377,10 @@ public class FlowLayout  extends ViewGroup {
         public MyLayoutParams(LayoutParams lp) {
             super(lp);
         }
+
+        public MyLayoutParams(MarginLayoutParams lp) {
+            super(lp);
+        }
     }
 
     @Override
@@ -227,9 +1390,17 @@ public class FlowLayout  extends ViewGroup {
 
     @Override
     protected ViewGroup.LayoutParams generateLayoutParams(ViewGroup.LayoutParams lp) {
+        if (lp instanceof MarginLayoutParams) {
+            return new MyLayoutParams((MarginLayoutParams) lp);
+        }
         return new MyLayoutParams(lp);
     }
 
+    @Override
+    protected boolean checkLayoutParams(ViewGroup.LayoutParams p) {
+        return p instanceof MyLayoutParams;
+    }
+
     @Override
     protected LayoutParams generateDefaultLayoutParams() {
         return new MyLayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT);
@@ -246,9 +1417,3 @@ public class FlowLayout  extends ViewGroup {
                 getResources().getDisplayMetrics());
     }
 }
-
-class ViewTag {
-    public int position;
-    public int x_index;
-    public int y_index;
-}
\ No newline at end of file
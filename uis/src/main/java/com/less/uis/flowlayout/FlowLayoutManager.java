@@ -0,0 +1,418 @@
+package com.less.uis.flowlayout;
+
+import android.content.Context;
+import android.graphics.PointF;
+import android.support.v7.widget.LinearSmoothScroller;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.Arrays;
+
+/**
+ * FlowLayout排列方式的RecyclerView.LayoutManager
+ *
+ * <p>
+ *     说明: 换行规则与FlowLayout完全一致,但只创建并布局可见区域上下各预留半屏范围内的行,滑出范围的标签交给Recycler回收,
+ *     所以内存只和屏幕大小有关,和标签总数无关.
+ *     每一排第一个标签的position,顶部偏移和高度都记录在int数组中,滑动时按偏移二分查找第一个可见行;
+ *     排列是随着滑动逐行进行的,还没有排列到的部分按已排列部分的平均行高估算滚动条.
+ * </p>
+ */
+public class FlowLayoutManager extends RecyclerView.LayoutManager implements RecyclerView.SmoothScroller.ScrollVectorProvider {
+    // 可见区域上下各额外布局的范围,按可见高度的比例计算
+    private static final float PREFETCH_RATIO = 0.5f;
+
+    private final int mHorizontalSpacing;
+    private final int mVerticalSpacing;
+
+    // mRowFirst[r]: 第r排第一个标签的position, mRowTop[r]: 第r排相对内容顶部(不含paddingTop)的偏移
+    // 下标mRowCount处记录的是下一排(尚未排列)的起点
+    private int[] mRowFirst = new int[16];
+    private int[] mRowTop = new int[16];
+    private int[] mRowHeight = new int[16];
+    private int mRowCount;
+    private int mPackedWidth = -1;
+
+    private int mScrollY;
+    // 当前已经添加到RecyclerView中的行[mFirstRow, mLastRow]
+    private int mFirstRow;
+    private int mLastRow = -1;
+
+    private int mPendingPosition = RecyclerView.NO_POSITION;
+
+    public FlowLayoutManager(Context context) {
+        this(dip2px(context, 16), dip2px(context, 16));
+    }
+
+    /**
+     * @param horizontalSpacing 标签之间以及标签与左右边缘的水平间距,单位px
+     * @param verticalSpacing   行与行之间以及与上下边缘的垂直间距,单位px
+     */
+    public FlowLayoutManager(int horizontalSpacing, int verticalSpacing) {
+        mHorizontalSpacing = horizontalSpacing;
+        mVerticalSpacing = verticalSpacing;
+        resetRows();
+    }
+
+    @Override
+    public RecyclerView.LayoutParams generateDefaultLayoutParams() {
+        return new RecyclerView.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+    }
+
+    @Override
+    public boolean canScrollVertically() {
+        return true;
+    }
+
+    @Override
+    public void onLayoutChildren(RecyclerView.Recycler recycler, RecyclerView.State state) {
+        if (state.getItemCount() == 0) {
+            removeAndRecycleAllViews(recycler);
+            resetRows();
+            mScrollY = 0;
+            mPendingPosition = RecyclerView.NO_POSITION;
+            return;
+        }
+        if (state.isPreLayout()) {
+            return;
+        }
+
+        int width = getWidth() - getPaddingLeft() - getPaddingRight();
+        if (width != mPackedWidth) {
+            resetRows();
+            mPackedWidth = width;
+        }
+
+        if (mPendingPosition != RecyclerView.NO_POSITION) {
+            int position = Math.min(mPendingPosition, state.getItemCount() - 1);
+            while (!isComplete(state) && mRowFirst[mRowCount] <= position) {
+                packRow(recycler, state);
+            }
+            mScrollY = Math.max(0, mRowTop[findRowOfPosition(position)] - mVerticalSpacing);
+            mPendingPosition = RecyclerView.NO_POSITION;
+        }
+        packUntil(recycler, state, mScrollY + getVerticalSpace());
+        mScrollY = clampScroll(state, mScrollY);
+
+        detachAndScrapAttachedViews(recycler);
+        mFirstRow = 0;
+        mLastRow = -1;
+        fill(recycler, state);
+    }
+
+    @Override
+    public int scrollVerticallyBy(int dy, RecyclerView.Recycler recycler, RecyclerView.State state) {
+        if (getChildCount() == 0 || dy == 0) {
+            return 0;
+        }
+        int target = mScrollY + dy;
+        if (dy > 0) {
+            // 快速滑动时一次可能越过多行,先把这些行排列出来才能知道是否到底
+            packUntil(recycler, state, target + getVerticalSpace());
+        }
+        target = clampScroll(state, target);
+
+        int consumed = target - mScrollY;
+        if (consumed == 0) {
+            return 0;
+        }
+        mScrollY = target;
+        offsetChildrenVertical(-consumed);
+        fill(recycler, state);
+        return consumed;
+    }
+
+    @Override
+    public void scrollToPosition(int position) {
+        mPendingPosition = position;
+        requestLayout();
+    }
+
+    @Override
+    public void smoothScrollToPosition(RecyclerView recyclerView, RecyclerView.State state, int position) {
+        LinearSmoothScroller scroller = new LinearSmoothScroller(recyclerView.getContext());
+        scroller.setTargetPosition(position);
+        startSmoothScroll(scroller);
+    }
+
+    @Override
+    public PointF computeScrollVectorForPosition(int targetPosition) {
+        if (getChildCount() == 0) {
+            return null;
+        }
+        int firstPosition = getPosition(getChildAt(0));
+        return new PointF(0, targetPosition < firstPosition ? -1 : 1);
+    }
+
+    @Override
+    public int computeVerticalScrollOffset(RecyclerView.State state) {
+        return mScrollY;
+    }
+
+    @Override
+    public int computeVerticalScrollExtent(RecyclerView.State state) {
+        return getVerticalSpace();
+    }
+
+    @Override
+    public int computeVerticalScrollRange(RecyclerView.State state) {
+        int packed = mRowFirst[mRowCount];
+        int contentHeight = mRowTop[mRowCount];
+        if (!isComplete(state) && packed > 0) {
+            // 尚未排列的部分按已排列部分每个标签平均占用的高度估算
+            contentHeight += (long) contentHeight * (state.getItemCount() - packed) / packed;
+        }
+        return Math.max(contentHeight, getVerticalSpace());
+    }
+
+    @Override
+    public void onItemsChanged(RecyclerView recyclerView) {
+        resetRows();
+    }
+
+    @Override
+    public void onItemsAdded(RecyclerView recyclerView, int positionStart, int itemCount) {
+        invalidateFrom(positionStart);
+    }
+
+    @Override
+    public void onItemsRemoved(RecyclerView recyclerView, int positionStart, int itemCount) {
+        invalidateFrom(positionStart);
+    }
+
+    @Override
+    public void onItemsUpdated(RecyclerView recyclerView, int positionStart, int itemCount) {
+        invalidateFrom(positionStart);
+    }
+
+    @Override
+    public void onItemsMoved(RecyclerView recyclerView, int from, int to, int itemCount) {
+        invalidateFrom(Math.min(from, to));
+    }
+
+    /**
+     * fill 根据mScrollY回收滑出范围的行,补上进入范围的行
+     */
+    private void fill(RecyclerView.Recycler recycler, RecyclerView.State state) {
+        int extra = (int) (getVerticalSpace() * PREFETCH_RATIO);
+        int windowTop = Math.max(0, mScrollY - extra);
+        int windowBottom = mScrollY + getVerticalSpace() + extra;
+
+        // 大幅跳跃时中间经过的行只排列不布局
+        packUntil(recycler, state, windowTop);
+        int first = findRow(windowTop, state);
+
+        // 与当前已添加的行没有交集时全部回收
+        if (mLastRow < mFirstRow || first > mLastRow || mRowTop[mFirstRow] >= windowBottom) {
+            removeAndRecycleAllViews(recycler);
+            mFirstRow = first;
+            mLastRow = first - 1;
+        }
+
+        // 回收上方滑出范围的行
+        while (mFirstRow < first && mFirstRow <= mLastRow) {
+            int count = mRowFirst[mFirstRow + 1] - mRowFirst[mFirstRow];
+            for (int i = 0; i < count; i++) {
+                removeAndRecycleViewAt(0, recycler);
+            }
+            mFirstRow++;
+        }
+        // 补上上方进入范围的行,这些行一定已经排列过
+        while (mFirstRow > first) {
+            mFirstRow--;
+            addRow(recycler, state, mFirstRow, 0);
+        }
+        // 回收下方滑出范围的行
+        while (mLastRow >= mFirstRow && mRowTop[mLastRow] >= windowBottom) {
+            int count = mRowFirst[mLastRow + 1] - mRowFirst[mLastRow];
+            for (int i = 0; i < count; i++) {
+                removeAndRecycleViewAt(getChildCount() - 1, recycler);
+            }
+            mLastRow--;
+        }
+        // 补上下方进入范围的行,需要时边排列边布局
+        while ((mLastRow + 1 < mRowCount || !isComplete(state)) && mRowTop[mLastRow + 1] < windowBottom) {
+            mLastRow++;
+            addRow(recycler, state, mLastRow, getChildCount());
+        }
+    }
+
+    /**
+     * addRow 把第row排的标签添加到RecyclerView中,row是下一个尚未排列的行时同时完成排列
+     *
+     * 和FlowLayout一样每个标签在这一排中垂直居中,尚未排列的行要先添加完才知道行高,所以先添加再统一布局.
+     */
+    private void addRow(RecyclerView.Recycler recycler, RecyclerView.State state, int row, int childIndex) {
+        boolean packed = row < mRowCount;
+        int start = mRowFirst[row];
+        int end = packed ? mRowFirst[row + 1] : state.getItemCount();
+
+        int canUsed = getWidth() - getPaddingLeft() - getPaddingRight() - mHorizontalSpacing;
+        int currentUsed = 0;
+        int lineHeight = 0;
+        int firstIndex = childIndex;
+
+        int position = start;
+        for (; position < end; position++) {
+            View child = recycler.getViewForPosition(position);
+            measureChildWithMargins(child, 0, 0);
+            int childWidth = getMeasuredWidthWithMargins(child);
+            int childHeight = getMeasuredHeightWithMargins(child);
+            if (!packed && position > start && currentUsed + childWidth + mHorizontalSpacing > canUsed) {
+                recycler.recycleView(child);
+                break;
+            }
+            addView(child, childIndex++);
+
+            currentUsed += childWidth + mHorizontalSpacing;
+            lineHeight = Math.max(lineHeight, childHeight);
+        }
+        if (!packed) {
+            appendRow(position, lineHeight);
+        }
+
+        int left = getPaddingLeft() + mHorizontalSpacing;
+        int top = getPaddingTop() + mRowTop[row] - mScrollY;
+        int rowHeight = mRowHeight[row];
+        for (int i = firstIndex; i < childIndex; i++) {
+            View child = getChildAt(i);
+            int childWidth = getMeasuredWidthWithMargins(child);
+            int childHeight = getMeasuredHeightWithMargins(child);
+            int childTop = top + (rowHeight - childHeight) / 2;
+            layoutDecoratedWithMargins(child, left, childTop, left + childWidth, childTop + childHeight);
+            left += childWidth + mHorizontalSpacing;
+        }
+    }
+
+    /**
+     * packRow 只测量不布局,排列下一个尚未排列的行
+     */
+    private void packRow(RecyclerView.Recycler recycler, RecyclerView.State state) {
+        int start = mRowFirst[mRowCount];
+        int itemCount = state.getItemCount();
+        int canUsed = getWidth() - getPaddingLeft() - getPaddingRight() - mHorizontalSpacing;
+        int currentUsed = 0;
+        int lineHeight = 0;
+
+        int position = start;
+        for (; position < itemCount; position++) {
+            View child = recycler.getViewForPosition(position);
+            measureChildWithMargins(child, 0, 0);
+            int childWidth = getMeasuredWidthWithMargins(child);
+            int childHeight = getMeasuredHeightWithMargins(child);
+            recycler.recycleView(child);
+            if (position > start && currentUsed + childWidth + mHorizontalSpacing > canUsed) {
+                break;
+            }
+            currentUsed += childWidth + mHorizontalSpacing;
+            lineHeight = Math.max(lineHeight, childHeight);
+        }
+        appendRow(position, lineHeight);
+    }
+
+    private void packUntil(RecyclerView.Recycler recycler, RecyclerView.State state, int contentBottom) {
+        while (!isComplete(state) && mRowTop[mRowCount] < contentBottom) {
+            packRow(recycler, state);
+        }
+    }
+
+    private void appendRow(int nextFirst, int lineHeight) {
+        int row = mRowCount;
+        ensureRowCapacity(row + 2);
+        mRowHeight[row] = lineHeight;
+        mRowFirst[row + 1] = nextFirst;
+        mRowTop[row + 1] = mRowTop[row] + lineHeight + mVerticalSpacing;
+        mRowCount++;
+    }
+
+    private void ensureRowCapacity(int size) {
+        if (mRowFirst.length >= size) {
+            return;
+        }
+        int capacity = Math.max(size, mRowFirst.length << 1);
+        mRowFirst = Arrays.copyOf(mRowFirst, capacity);
+        mRowTop = Arrays.copyOf(mRowTop, capacity);
+        mRowHeight = Arrays.copyOf(mRowHeight, capacity);
+    }
+
+    private void resetRows() {
+        mRowCount = 0;
+        mRowFirst[0] = 0;
+        mRowTop[0] = mVerticalSpacing;
+    }
+
+    /**
+     * invalidateFrom 数据变化时丢弃position所在行及之后的排列结果
+     */
+    private void invalidateFrom(int position) {
+        if (mRowCount == 0) {
+            return;
+        }
+        mRowCount = findRowOfPosition(position);
+    }
+
+    private boolean isComplete(RecyclerView.State state) {
+        return mRowFirst[mRowCount] >= state.getItemCount();
+    }
+
+    /**
+     * findRow 二分查找顶部偏移不大于offset的最后一行,已排列的行之后还有标签时可能返回下一个尚未排列的行
+     */
+    private int findRow(int offset, RecyclerView.State state) {
+        int low = 0;
+        int high = isComplete(state) ? mRowCount - 1 : mRowCount;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (mRowTop[mid] <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return Math.max(low, 0);
+    }
+
+    /**
+     * findRowOfPosition 二分查找position所在的已排列的行
+     */
+    private int findRowOfPosition(int position) {
+        int low = 0;
+        int high = mRowCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (mRowFirst[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return Math.max(low, 0);
+    }
+
+    private int clampScroll(RecyclerView.State state, int scrollY) {
+        if (isComplete(state)) {
+            scrollY = Math.min(scrollY, mRowTop[mRowCount] - getVerticalSpace());
+        }
+        return Math.max(0, scrollY);
+    }
+
+    private int getVerticalSpace() {
+        return getHeight() - getPaddingTop() - getPaddingBottom();
+    }
+
+    private int getMeasuredWidthWithMargins(View child) {
+        RecyclerView.LayoutParams lp = (RecyclerView.LayoutParams) child.getLayoutParams();
+        return getDecoratedMeasuredWidth(child) + lp.leftMargin + lp.rightMargin;
+    }
+
+    private int getMeasuredHeightWithMargins(View child) {
+        RecyclerView.LayoutParams lp = (RecyclerView.LayoutParams) child.getLayoutParams();
+        return getDecoratedMeasuredHeight(child) + lp.topMargin + lp.bottomMargin;
+    }
+
+    private static int dip2px(Context context, float dpValue) {
+        float scale = context.getResources().getDisplayMetrics().density;
+        return (int) (dpValue * scale + 0.5f);
+    }
+}
@@ -0,0 +1,125 @@
+package com.less.uis.flowlayout;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 标签文字的前缀索引(字典树)
+ *
+ * <p>
+ *     说明: 每个节点按升序保存所有以该前缀开头的文字的position,查询时沿着前缀走到对应的节点直接返回,
+ *     耗时只和前缀的长度有关,和数据总数无关.不区分大小写.
+ * </p>
+ */
+public class FlowPrefixIndex {
+    private static final int[] EMPTY = new int[0];
+
+    private final Node mRoot = new Node();
+
+    // 已经加入的文字数量,即下一个追加的position
+    private int mSize;
+
+    public FlowPrefixIndex(List<? extends CharSequence> texts) {
+        addTexts(texts);
+        mRoot.trim();
+    }
+
+    /**
+     * append 在末尾追加数据的文字,texts的position接着之前加入的文字
+     *
+     * 只遍历追加的文字,position比已有的都大,每个节点的数组追加之后仍然有序.
+     */
+    public void append(List<? extends CharSequence> texts) {
+        addTexts(texts);
+    }
+
+    private void addTexts(List<? extends CharSequence> texts) {
+        for (int i = 0; i < texts.size(); i++, mSize++) {
+            CharSequence text = texts.get(i);
+            if (text == null) {
+                continue;
+            }
+            Node node = mRoot;
+            for (int j = 0; j < text.length(); j++) {
+                node = node.getOrAddChild(Character.toLowerCase(text.charAt(j)));
+                // position是按顺序加入的,数组天然有序
+                node.addPosition(mSize);
+            }
+        }
+    }
+
+    /**
+     * find 返回所有以prefix开头的position,升序排列,返回的数组不能修改
+     */
+    public int[] find(CharSequence prefix) {
+        Node node = mRoot;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.getChild(Character.toLowerCase(prefix.charAt(i)));
+        }
+        if (node == null) {
+            return EMPTY;
+        }
+        // 追加过的节点数组有空余,返回拷贝;之后再追加时不会改到已经返回的数组
+        return node.size == node.positions.length ? node.positions : Arrays.copyOf(node.positions, node.size);
+    }
+
+    private static class Node {
+        char[] keys;
+        Node[] children;
+        int childCount;
+
+        int[] positions = EMPTY;
+        int size;
+
+        Node getChild(char key) {
+            if (childCount == 0) {
+                return null;
+            }
+            int index = Arrays.binarySearch(keys, 0, childCount, key);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node getOrAddChild(char key) {
+            int index = childCount == 0 ? -1 : Arrays.binarySearch(keys, 0, childCount, key);
+            if (index >= 0) {
+                return children[index];
+            }
+            // 按字符顺序插入,查找时可以二分
+            index = -index - 1;
+            if (keys == null) {
+                keys = new char[2];
+                children = new Node[2];
+            } else if (childCount == keys.length) {
+                keys = Arrays.copyOf(keys, childCount * 2);
+                children = Arrays.copyOf(children, childCount * 2);
+            }
+            System.arraycopy(keys, index, keys, index + 1, childCount - index);
+            System.arraycopy(children, index, children, index + 1, childCount - index);
+            Node child = new Node();
+            keys[index] = key;
+            children[index] = child;
+            childCount++;
+            return child;
+        }
+
+        void addPosition(int position) {
+            // 同一个文字中重复出现的前缀只记一次
+            if (size > 0 && positions[size - 1] == position) {
+                return;
+            }
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(4, size * 2));
+            }
+            positions[size++] = position;
+        }
+
+        void trim() {
+            if (positions.length != size) {
+                positions = Arrays.copyOf(positions, size);
+            }
+            for (int i = 0; i < childCount; i++) {
+                children[i].trim();
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.less.uis.flowlayout;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * FlowLayout排列结果的快照,用于冷启动时跳过测量
+ *
+ * <p>
+ *     说明: 记录每个标签的宽高,换行仍然按这些尺寸重新计算,只省去测量文字的过程.
+ *     以可用宽度,间距,padding,文字大小,屏幕密度和数据的hash作为key,任何一项不一致快照都不会被使用.
+ *     toByteArray导出为紧凑的二进制记录,可以和其他启动缓存一起存到文件中,fromByteArray读取失败时返回null按没有缓存处理.
+ * </p>
+ */
+public class FlowSnapshot {
+    private static final int MAGIC = 0x464c5753;
+    // 2: 去掉了没有使用的每排起点和总高度,key加上了间距和padding
+    private static final int VERSION = 2;
+
+    private final int mAvailableWidth;
+    private final int mHorizontalSpacing;
+    private final int mVerticalSpacing;
+    private final int mPaddingLeft;
+    private final int mPaddingTop;
+    private final int mPaddingRight;
+    private final int mPaddingBottom;
+    private final int mTextSize;
+    private final float mDensity;
+    private final int mContentHash;
+
+    private final int[] mWidths;
+    private final int[] mHeights;
+
+    FlowSnapshot(int availableWidth, int horizontalSpacing, int verticalSpacing,
+                 int paddingLeft, int paddingTop, int paddingRight, int paddingBottom,
+                 int textSize, float density, int contentHash, int[] widths, int[] heights) {
+        mAvailableWidth = availableWidth;
+        mHorizontalSpacing = horizontalSpacing;
+        mVerticalSpacing = verticalSpacing;
+        mPaddingLeft = paddingLeft;
+        mPaddingTop = paddingTop;
+        mPaddingRight = paddingRight;
+        mPaddingBottom = paddingBottom;
+        mTextSize = textSize;
+        mDensity = density;
+        mContentHash = contentHash;
+        mWidths = widths;
+        mHeights = heights;
+    }
+
+    boolean matches(int availableWidth, int horizontalSpacing, int verticalSpacing,
+                    int paddingLeft, int paddingTop, int paddingRight, int paddingBottom,
+                    int textSize, float density, int contentHash) {
+        return mAvailableWidth == availableWidth
+                && mHorizontalSpacing == horizontalSpacing && mVerticalSpacing == verticalSpacing
+                && mPaddingLeft == paddingLeft && mPaddingTop == paddingTop
+                && mPaddingRight == paddingRight && mPaddingBottom == paddingBottom
+                && mTextSize == textSize && Float.compare(mDensity, density) == 0 && mContentHash == contentHash;
+    }
+
+    public int size() {
+        return mWidths.length;
+    }
+
+    public int getWidth(int position) {
+        return mWidths[position];
+    }
+
+    public int getHeight(int position) {
+        return mHeights[position];
+    }
+
+    public byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(48 + mWidths.length * 4);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(mAvailableWidth);
+            out.writeInt(mHorizontalSpacing);
+            out.writeInt(mVerticalSpacing);
+            out.writeInt(mPaddingLeft);
+            out.writeInt(mPaddingTop);
+            out.writeInt(mPaddingRight);
+            out.writeInt(mPaddingBottom);
+            out.writeInt(mTextSize);
+            out.writeFloat(mDensity);
+            out.writeInt(mContentHash);
+            // 标签的宽高不会超过屏幕,用两个字节保存
+            out.writeInt(mWidths.length);
+            for (int i = 0; i < mWidths.length; i++) {
+                out.writeShort(mWidths[i]);
+                out.writeShort(mHeights[i]);
+            }
+            out.flush();
+        } catch (IOException e) {
+            // ByteArrayOutputStream不会抛出IOException
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * fromByteArray 读取toByteArray导出的记录,格式不对或版本不一致时返回null
+     */
+    public static FlowSnapshot fromByteArray(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        try {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                return null;
+            }
+            int availableWidth = in.readInt();
+            int horizontalSpacing = in.readInt();
+            int verticalSpacing = in.readInt();
+            int paddingLeft = in.readInt();
+            int paddingTop = in.readInt();
+            int paddingRight = in.readInt();
+            int paddingBottom = in.readInt();
+            int textSize = in.readInt();
+            float density = in.readFloat();
+            int contentHash = in.readInt();
+
+            int count = in.readInt();
+            if (count < 0 || count > data.length / 4) {
+                return null;
+            }
+            int[] widths = new int[count];
+            int[] heights = new int[count];
+            for (int i = 0; i < count; i++) {
+                widths[i] = in.readUnsignedShort();
+                heights[i] = in.readUnsignedShort();
+            }
+            return new FlowSnapshot(availableWidth, horizontalSpacing, verticalSpacing,
+                    paddingLeft, paddingTop, paddingRight, paddingBottom, textSize, density, contentHash, widths, heights);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
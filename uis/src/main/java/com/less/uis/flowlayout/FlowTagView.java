@@ -0,0 +1,372 @@
+package com.less.uis.flowlayout;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.Bundle;
+import android.support.v4.content.ContextCompat;
+import android.support.v4.view.ViewCompat;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
+import android.support.v4.widget.ExploreByTouchHelper;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
+import android.view.View;
+import android.view.accessibility.AccessibilityEvent;
+
+import com.less.uis.R;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 只读标签云,所有标签在一次onDraw中画出,不创建任何childView
+ *
+ * <p>
+ *     说明: 与FlowLayout使用相同的属性和换行规则,但标签只是一段文字加一个共用的背景Drawable,
+ *     共用一个TextPaint,每个标签的宽度在setTags时算好缓存,按下状态和点击判断都由自己处理.
+ *     所有标签高度相同,点击时直接算出第几排,再在这一排中查找.适合列表item中只展示不编辑的标签行.
+ *     每个标签通过ExploreByTouchHelper暴露为一个虚拟的无障碍节点,TalkBack可以逐个朗读和点击.
+ * </p>
+ */
+public class FlowTagView extends View {
+    private float mVerticalSpacing;
+    private float mHorizontalSpacing;
+    private int mTextPaddingH;
+    private int mTextPaddingV;
+
+    private final TextPaint mTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint.FontMetricsInt mFontMetrics = new Paint.FontMetricsInt();
+    // 共用的背景,普通状态和按下状态各一份
+    private Drawable mBackground;
+    private Drawable mPressedBackground;
+
+    private final List<String> mTags = new ArrayList<>();
+    // 超出可用宽度时省略后的文字,以及每个标签的宽度和座位
+    private String[] mDisplayTexts = new String[0];
+    private int[] mTextWidth = new int[0];
+    private int[] mTagWidth = new int[0];
+    private int[] mTagLeft = new int[0];
+    private int[] mTagRow = new int[0];
+    private int[] mRowStart = new int[1];
+    private int mRowCount;
+    private int mTagHeight;
+    private int mPackedWidth = -1;
+
+    private int mPressedIndex = -1;
+    private OnTagClickListener mOnTagClickListener;
+    private final TagAccessibilityHelper mAccessibilityHelper;
+
+    public interface OnTagClickListener {
+        void onTagClick(int position, String tag);
+    }
+
+    public FlowTagView(Context context) {
+        this(context, null);
+    }
+
+    public FlowTagView(Context context, AttributeSet attrs) {
+        super(context, attrs, 0);
+
+        TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.FlowLayout);
+
+        mVerticalSpacing = a.getDimension(R.styleable.FlowLayout_vSpace, dip2px(16));
+        mHorizontalSpacing = a.getDimension(R.styleable.FlowLayout_hSpace, dip2px(16));
+        int textSize = a.getDimensionPixelOffset(R.styleable.FlowLayout_mTextSize, sp2px(15));
+        int textColor = a.getColor(R.styleable.FlowLayout_mTextColor, Color.parseColor("#db0a71e1"));
+        int background = a.getResourceId(R.styleable.FlowLayout_mTvBackground, R.drawable.flow_text_selector);
+        mTextPaddingH = a.getDimensionPixelOffset(R.styleable.FlowLayout_mTextPaddingH, dip2px(10));
+        mTextPaddingV = a.getDimensionPixelOffset(R.styleable.FlowLayout_mTextPaddingV, dip2px(4));
+        a.recycle();
+
+        mTextPaint.setTextSize(textSize);
+        mTextPaint.setColor(textColor);
+        mTextPaint.getFontMetricsInt(mFontMetrics);
+        mTagHeight = mFontMetrics.bottom - mFontMetrics.top + mTextPaddingV * 2;
+
+        mBackground = ContextCompat.getDrawable(context, background).mutate();
+        mPressedBackground = mBackground.getConstantState().newDrawable(getResources()).mutate();
+        mPressedBackground.setState(new int[]{android.R.attr.state_pressed});
+
+        mAccessibilityHelper = new TagAccessibilityHelper();
+        ViewCompat.setAccessibilityDelegate(this, mAccessibilityHelper);
+    }
+
+    /**
+     * setTags 设置标签,宽度在这里一次算好
+     */
+    public void setTags(List<String> tags) {
+        mTags.clear();
+        if (tags != null) {
+            mTags.addAll(tags);
+        }
+        int count = mTags.size();
+        if (mTagWidth.length < count) {
+            mDisplayTexts = new String[count];
+            mTextWidth = new int[count];
+            mTagWidth = new int[count];
+            mTagLeft = new int[count];
+            mTagRow = new int[count];
+        }
+        for (int i = 0; i < count; i++) {
+            mTextWidth[i] = (int) Math.ceil(mTextPaint.measureText(mTags.get(i))) + mTextPaddingH * 2;
+        }
+        mPressedIndex = -1;
+        mPackedWidth = -1;
+        requestLayout();
+        invalidate();
+        mAccessibilityHelper.invalidateRoot();
+    }
+
+    public List<String> getTags() {
+        return Collections.unmodifiableList(mTags);
+    }
+
+    public void setOnTagClickListener(OnTagClickListener onTagClickListener) {
+        mOnTagClickListener = onTagClickListener;
+    }
+
+    @Override
+    public void setPadding(int left, int top, int right, int bottom) {
+        // 座位包含了padding,padding变化后要重新排列
+        mPackedWidth = -1;
+        super.setPadding(left, top, right, bottom);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+    @Override
+    public void setPaddingRelative(int start, int top, int end, int bottom) {
+        mPackedWidth = -1;
+        super.setPaddingRelative(start, top, end, bottom);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int widthSize = resolveSize(0, widthMeasureSpec);
+        if (widthSize != mPackedWidth) {
+            pack(widthSize);
+        }
+        float wannaHeight = getPaddingTop() + getPaddingBottom() + mTagHeight * mRowCount + mVerticalSpacing * (mRowCount + 1);
+        setMeasuredDimension(widthSize, resolveSize((int) wannaHeight, heightMeasureSpec));
+    }
+
+    /**
+     * pack 与FlowLayout相同的换行规则,每个标签的座位记录到数组中
+     */
+    private void pack(int widthSize) {
+        int hSpace = (int) mHorizontalSpacing;
+        int maxWidth = widthSize - getPaddingLeft() - getPaddingRight() - hSpace * 2;
+        int canUsed = widthSize - getPaddingLeft() - getPaddingRight() - hSpace;
+        int currentUsed = 0;
+        int row = 0;
+        int column = 0;
+
+        int count = mTags.size();
+        for (int i = 0; i < count; i++) {
+            int tagWidth = mTextWidth[i];
+            mDisplayTexts[i] = mTags.get(i);
+            // 一行都放不下的标签省略显示
+            if (tagWidth > maxWidth && maxWidth > mTextPaddingH * 2) {
+                mDisplayTexts[i] = TextUtils.ellipsize(mTags.get(i), mTextPaint, maxWidth - mTextPaddingH * 2, TextUtils.TruncateAt.END).toString();
+                tagWidth = maxWidth;
+            }
+            mTagWidth[i] = tagWidth;
+            if (column > 0 && currentUsed + tagWidth + hSpace > canUsed) {
+                currentUsed = 0;
+                column = 0;
+                row++;
+            }
+            if (column == 0) {
+                if (mRowStart.length <= row) {
+                    mRowStart = Arrays.copyOf(mRowStart, Math.max(row + 1, mRowStart.length << 1));
+                }
+                mRowStart[row] = i;
+            }
+            mTagRow[i] = row;
+            mTagLeft[i] = getPaddingLeft() + hSpace + currentUsed;
+            currentUsed += tagWidth + hSpace;
+            column++;
+        }
+        mRowCount = count == 0 ? 0 : row + 1;
+        mPackedWidth = widthSize;
+        mAccessibilityHelper.invalidateRoot();
+    }
+
+    private int getRowTop(int row) {
+        return (int) (getPaddingTop() + mVerticalSpacing + (mTagHeight + mVerticalSpacing) * row);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        final TextPaint paint = mTextPaint;
+        final int baselineOffset = mTextPaddingV - mFontMetrics.top;
+        int count = mTags.size();
+        for (int i = 0; i < count; i++) {
+            int left = mTagLeft[i];
+            int top = getRowTop(mTagRow[i]);
+            int right = left + mTagWidth[i];
+
+            Drawable background = i == mPressedIndex ? mPressedBackground : mBackground;
+            background.setBounds(left, top, right, top + mTagHeight);
+            background.draw(canvas);
+
+            canvas.drawText(mDisplayTexts[i], left + mTextPaddingH, top + baselineOffset, paint);
+        }
+    }
+
+    /**
+     * findTagUnder 找到坐标下的标签,所有标签等高所以直接算出第几排,只需在这一排中查找
+     *
+     * @return 标签的position,没有则返回-1
+     */
+    public int findTagUnder(float x, float y) {
+        if (mRowCount == 0) {
+            return -1;
+        }
+        float offset = y - getPaddingTop() - mVerticalSpacing;
+        if (offset < 0) {
+            return -1;
+        }
+        float pitch = mTagHeight + mVerticalSpacing;
+        int row = (int) (offset / pitch);
+        if (row >= mRowCount || offset - row * pitch > mTagHeight) {
+            return -1;
+        }
+        int end = row + 1 < mRowCount ? mRowStart[row + 1] : mTags.size();
+        for (int i = mRowStart[row]; i < end; i++) {
+            int left = mTagLeft[i];
+            if (x < left) {
+                return -1;
+            }
+            if (x < left + mTagWidth[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                setPressedIndex(findTagUnder(event.getX(), event.getY()));
+                return mPressedIndex != -1 || super.onTouchEvent(event);
+            case MotionEvent.ACTION_MOVE:
+                if (mPressedIndex != -1 && findTagUnder(event.getX(), event.getY()) != mPressedIndex) {
+                    setPressedIndex(-1);
+                }
+                break;
+            case MotionEvent.ACTION_UP:
+                if (mPressedIndex != -1) {
+                    int position = mPressedIndex;
+                    setPressedIndex(-1);
+                    performTagClick(position);
+                    return true;
+                }
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                setPressedIndex(-1);
+                break;
+        }
+        return super.onTouchEvent(event);
+    }
+
+    /**
+     * performTagClick 触摸和无障碍服务的点击都从这里分发
+     */
+    private boolean performTagClick(int position) {
+        if (mOnTagClickListener == null) {
+            return false;
+        }
+        playSoundEffect(SoundEffectConstants.CLICK);
+        mOnTagClickListener.onTagClick(position, mTags.get(position));
+        mAccessibilityHelper.sendEventForVirtualView(position, AccessibilityEvent.TYPE_VIEW_CLICKED);
+        return true;
+    }
+
+    @Override
+    protected boolean dispatchHoverEvent(MotionEvent event) {
+        return mAccessibilityHelper.dispatchHoverEvent(event) || super.dispatchHoverEvent(event);
+    }
+
+    /**
+     * 每个标签对应一个虚拟的无障碍节点,节点id即position
+     */
+    private class TagAccessibilityHelper extends ExploreByTouchHelper {
+
+        TagAccessibilityHelper() {
+            super(FlowTagView.this);
+        }
+
+        @Override
+        protected int getVirtualViewAt(float x, float y) {
+            int position = findTagUnder(x, y);
+            return position == -1 ? INVALID_ID : position;
+        }
+
+        @Override
+        protected void getVisibleVirtualViews(List<Integer> virtualViewIds) {
+            // 还没有排列时没有座位
+            int count = mPackedWidth < 0 ? 0 : mTags.size();
+            for (int i = 0; i < count; i++) {
+                virtualViewIds.add(i);
+            }
+        }
+
+        @Override
+        protected void onPopulateNodeForVirtualView(int virtualViewId, AccessibilityNodeInfoCompat node) {
+            if (virtualViewId >= mTags.size() || mPackedWidth < 0) {
+                // 数据已经变化,节点马上会被invalidateRoot刷新,这里给一个空的位置
+                node.setText("");
+                node.setBoundsInParent(new Rect());
+                return;
+            }
+            int left = mTagLeft[virtualViewId];
+            int top = getRowTop(mTagRow[virtualViewId]);
+            node.setText(mTags.get(virtualViewId));
+            node.setBoundsInParent(new Rect(left, top, left + mTagWidth[virtualViewId], top + mTagHeight));
+            if (mOnTagClickListener != null) {
+                node.setClickable(true);
+                node.addAction(AccessibilityNodeInfoCompat.ACTION_CLICK);
+            }
+        }
+
+        @Override
+        protected boolean onPerformActionForVirtualView(int virtualViewId, int action, Bundle arguments) {
+            if (action == AccessibilityNodeInfoCompat.ACTION_CLICK && virtualViewId < mTags.size()) {
+                return performTagClick(virtualViewId);
+            }
+            return false;
+        }
+    }
+
+    private void setPressedIndex(int index) {
+        if (mPressedIndex != index) {
+            mPressedIndex = index;
+            invalidate();
+        }
+    }
+
+    // dp2ptx
+    public int dip2px(float dpValue) {
+        float scale = getContext().getResources().getDisplayMetrics().density;
+        return (int) (dpValue * scale + 0.5f);
+    }
+
+    private int sp2px(float spValue) {
+        return (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, spValue,
+                getResources().getDisplayMetrics());
+    }
+}
@@ -0,0 +1,141 @@
+package com.less.uis.flowlayout;
+
+import android.graphics.Paint;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Layout;
+import android.text.TextPaint;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 在后台线程预先计算文字标签的尺寸
+ *
+ * <p>
+ *     说明: 创建时在主线程对{@link FlowLayout#createChip()}的文字大小,字体和padding做一份快照,
+ *     之后用Layout.getDesiredWidth在后台线程计算每个标签的宽高,数据量大时按CPU核数分段并行计算.
+ *     计算结果通过{@link FlowLayout#setPrecomputedSizes(Result)}交给FlowLayout,主线程以EXACTLY规格测量标签,
+ *     TextView不再计算wrap_content需要的文字宽度,但仍然会判断isBoring并创建Layout,所以省下的只是求宽度的那一次文字测量.
+ *     只适用于单行显示的文字标签.
+ * </p>
+ */
+public class FlowTextMeasurer {
+    // 每段至少包含的标签数,太少时分段的开销比计算本身还大
+    private static final int MIN_CHUNK_SIZE = 64;
+
+    private final TextPaint mPaint;
+    private final int mPaddingH;
+    private final int mPaddingV;
+    private final int mLineHeight;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    public interface Callback {
+        /**
+         * 计算完成后在主线程回调
+         */
+        void onMeasured(Result result);
+    }
+
+    /**
+     * 计算结果,下标即position
+     */
+    public static class Result {
+        private final List<String> mTexts;
+        private final int[] mWidths;
+        private final int[] mHeights;
+
+        Result(List<String> texts, int[] widths, int[] heights) {
+            mTexts = texts;
+            mWidths = widths;
+            mHeights = heights;
+        }
+
+        public int size() {
+            return mTexts.size();
+        }
+
+        public String getText(int position) {
+            return mTexts.get(position);
+        }
+
+        public int getWidth(int position) {
+            return mWidths[position];
+        }
+
+        public int getHeight(int position) {
+            return mHeights[position];
+        }
+    }
+
+    public FlowTextMeasurer(FlowLayout layout) {
+        TextView chip = layout.createChip();
+        mPaint = new TextPaint(chip.getPaint());
+        // compound padding包含padding和compound drawable,与TextView测量时一致
+        mPaddingH = chip.getCompoundPaddingLeft() + chip.getCompoundPaddingRight();
+        mPaddingV = chip.getCompoundPaddingTop() + chip.getCompoundPaddingBottom();
+
+        // TextView默认includeFontPadding,单行高度为top到bottom
+        Paint.FontMetricsInt fm = mPaint.getFontMetricsInt();
+        mLineHeight = fm.bottom - fm.top;
+    }
+
+    /**
+     * measure 使用默认的线程池计算
+     */
+    public void measure(List<String> texts, Callback callback) {
+        measure(texts, AsyncTask.THREAD_POOL_EXECUTOR, callback);
+    }
+
+    /**
+     * measure 在executor中分段并行计算texts中每个标签的尺寸,完成后在主线程回调
+     */
+    public void measure(List<String> texts, Executor executor, final Callback callback) {
+        final List<String> snapshot = new ArrayList<>(texts);
+        final int size = snapshot.size();
+        final int[] widths = new int[size];
+        final int[] heights = new int[size];
+
+        int chunkCount = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), size / MIN_CHUNK_SIZE));
+        int chunkSize = (size + chunkCount - 1) / chunkCount;
+        final AtomicInteger pending = new AtomicInteger(chunkCount);
+
+        for (int i = 0; i < chunkCount; i++) {
+            final int start = i * chunkSize;
+            final int end = Math.min(size, start + chunkSize);
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    measureRange(snapshot, start, end, widths, heights);
+                    // 最后一个完成的分段负责回调,AtomicInteger保证其他分段写入的结果对它可见
+                    if (pending.decrementAndGet() == 0) {
+                        final Result result = new Result(snapshot, widths, heights);
+                        mHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                callback.onMeasured(result);
+                            }
+                        });
+                    }
+                }
+            });
+        }
+    }
+
+    private void measureRange(List<String> texts, int start, int end, int[] widths, int[] heights) {
+        // Paint不是线程安全的,每个分段使用自己的副本
+        TextPaint paint = new TextPaint(mPaint);
+        int height = mLineHeight + mPaddingV;
+        for (int i = start; i < end; i++) {
+            String text = texts.get(i);
+            // 与TextView求wrap_content宽度的方式一致,向上取整,避免EXACTLY规格比文字窄1px导致换行或裁掉最后一个字
+            widths[i] = (int) Math.ceil(Layout.getDesiredWidth(text, paint)) + mPaddingH;
+            heights[i] = height;
+        }
+    }
+}
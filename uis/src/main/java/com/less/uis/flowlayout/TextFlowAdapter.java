@@ -0,0 +1,20 @@
+package com.less.uis.flowlayout;
+
+import android.view.View;
+import android.widget.TextView;
+
+/**
+ * 文字标签适配器,标签样式使用FlowLayout的mTextSize,mTextColor,mTvBackground等属性
+ */
+public class TextFlowAdapter extends FlowAdapter<String> {
+
+    @Override
+    protected View onCreateView(FlowLayout parent) {
+        return parent.createChip();
+    }
+
+    @Override
+    protected void onBindView(View view, String item) {
+        ((TextView) view).setText(item);
+    }
+}